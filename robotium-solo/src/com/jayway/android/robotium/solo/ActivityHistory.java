@@ -0,0 +1,25 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+
+import android.app.Activity;
+
+/**
+ * The activities that have been opened during a test, in the order they were first seen. The activities are held through weak references, so a finished
+ * {@code Activity} and its views can be garbage collected even if nothing tells the history that it is gone. Destroyed activities are removed as soon as
+ * the {@link ActivityRegistry} reports them, and collected ones as the history grows; an {@code Activity} that is still alive is never dropped.
+ *
+ */
+
+class ActivityHistory extends WeakHistory<Activity> {
+
+    /**
+     * Returns the activities in the history that have not been collected, the oldest first. Collected entries are dropped.
+     *
+     * @return a new list of the activities
+     */
+
+    public ArrayList<Activity> getActivities() {
+        return getAll();
+    }
+}
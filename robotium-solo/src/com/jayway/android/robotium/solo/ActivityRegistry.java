@@ -0,0 +1,256 @@
+package com.jayway.android.robotium.solo;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+import android.app.Activity;
+import android.app.Application;
+import android.app.Instrumentation;
+import android.content.Context;
+
+/**
+ * Keeps track of the resumed {@code Activity} and of the activities that are created and not yet destroyed, driven by the
+ * {@code Application.ActivityLifecycleCallbacks} of the application under test. The callbacks are available from API 14 and are registered by
+ * reflection, so the registry compiles against older APIs; on those {@link #isTracking()} is {@code false} and callers fall back to an
+ * {@code ActivityMonitor}.
+ *
+ * The callbacks run on the UI thread as the activities change, so reading the current {@code Activity} is a field read that needs neither a sleep nor
+ * a poll. Threads waiting for another {@code Activity} can block in {@link #awaitChange(int, Clock, long)} until the next lifecycle change. Created
+ * activities are added to the {@link ActivityHistory} of the test and destroyed ones are removed from it.
+ *
+ */
+
+class ActivityRegistry {
+
+    private static final String CALLBACKS_CLASS = "android.app.Application$ActivityLifecycleCallbacks";
+
+    private final LinkedHashSet<Activity> activities = new LinkedHashSet<Activity>();
+    private final ActivityHistory history;
+    private volatile Activity currentActivity;
+    private volatile int generation;
+    private Application application;
+    private volatile Object callbacks;
+    private Method unregisterMethod;
+
+    /**
+     * Constructs this object and starts tracking, if the platform supports it.
+     *
+     * @param inst
+     *            the {@code Instrumentation} instance, used to find the application under test if there is no start {@code Activity}
+     * @param startActivity
+     *            the start {@code Activity}, or {@code null}
+     * @param history
+     *            the {@code ActivityHistory} to keep up to date
+     */
+
+    public ActivityRegistry(Instrumentation inst, Activity startActivity, ActivityHistory history) {
+        this.history = history;
+        if (startActivity != null) {
+            activities.add(startActivity);
+            currentActivity = startActivity;
+        }
+        if (android.os.Build.VERSION.SDK_INT >= 14) {
+            register(findApplication(inst, startActivity));
+        }
+    }
+
+    /**
+     * Checks if the lifecycle callbacks are registered.
+     *
+     * @return {@code true} if the activities are tracked
+     */
+
+    public boolean isTracking() {
+        return callbacks != null;
+    }
+
+    /**
+     * Returns the most recently resumed {@code Activity}. If it has been destroyed since, the most recently created {@code Activity} that is not
+     * destroyed.
+     *
+     * @return the current {@code Activity}, or {@code null} if no {@code Activity} is known
+     */
+
+    public Activity getCurrentActivity() {
+        return currentActivity;
+    }
+
+    /**
+     * Returns the activities that have been created and not destroyed, in the order they were created.
+     *
+     * @return the activities, the most recent last
+     */
+
+    public synchronized ArrayList<Activity> getActivities() {
+        return new ArrayList<Activity>(activities);
+    }
+
+    /**
+     * Returns the current generation. It changes every time an {@code Activity} is created, resumed or destroyed.
+     *
+     * @return the current generation
+     */
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Waits until the generation differs from {@code generation}, or until the time has passed.
+     *
+     * @param generation
+     *            the generation the caller has seen, see {@link #getGeneration()}
+     * @param clock
+     *            the {@code Clock} to wait on
+     * @param millis
+     *            the maximum time to wait in milliseconds
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+
+    public void awaitChange(int generation, Clock clock, long millis) throws InterruptedException {
+        synchronized (this) {
+            if (this.generation == generation && millis > 0) {
+                clock.await(this, millis);
+            }
+        }
+    }
+
+    /**
+     * Stops tracking and releases the activities.
+     */
+
+    public synchronized void close() {
+        activities.clear();
+        currentActivity = null;
+        if (callbacks == null) {
+            return;
+        }
+        try {
+            unregisterMethod.invoke(application, callbacks);
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        } catch (InvocationTargetException e) {
+            e.printStackTrace();
+        }
+        callbacks = null;
+    }
+
+    /**
+     * Finds the application under test.
+     *
+     * @return the {@code Application}, or {@code null} if it can not be found
+     */
+
+    private static Application findApplication(Instrumentation inst, Activity startActivity) {
+        if (startActivity != null && startActivity.getApplication() != null) {
+            return startActivity.getApplication();
+        }
+        if (inst != null) {
+            final Context context = inst.getTargetContext();
+            if (context != null && context.getApplicationContext() instanceof Application) {
+                return (Application) context.getApplicationContext();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Registers a proxy implementing {@code ActivityLifecycleCallbacks} on the application.
+     *
+     * @param application
+     *            the application under test
+     */
+
+    private synchronized void register(Application application) {
+        if (application == null) {
+            return;
+        }
+        try {
+            final Class<?> callbacksClass = Class.forName(CALLBACKS_CLASS);
+            final Object proxy = Proxy.newProxyInstance(callbacksClass.getClassLoader(), new Class<?>[] { callbacksClass }, new CallbackHandler());
+            application.getClass().getMethod("registerActivityLifecycleCallbacks", callbacksClass).invoke(application, proxy);
+            this.unregisterMethod = application.getClass().getMethod("unregisterActivityLifecycleCallbacks", callbacksClass);
+            this.application = application;
+            this.callbacks = proxy;
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        } catch (NoSuchMethodException e) {
+            e.printStackTrace();
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        } catch (InvocationTargetException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Updates the registry for a lifecycle change and wakes up the waiting threads. Runs on the UI thread.
+     *
+     * @param activity
+     *            the {@code Activity} that changed
+     * @param resumed
+     *            {@code true} if it has been resumed
+     * @param destroyed
+     *            {@code true} if it has been destroyed
+     */
+
+    private synchronized void onLifecycleChanged(Activity activity, boolean resumed, boolean destroyed) {
+        if (destroyed) {
+            activities.remove(activity);
+            history.remove(activity);
+            if (currentActivity == activity) {
+                Activity last = null;
+                for (Activity remaining : activities) {
+                    last = remaining;
+                }
+                currentActivity = last;
+            }
+        } else {
+            activities.add(activity);
+            history.add(activity);
+            if (resumed || currentActivity == null) {
+                currentActivity = activity;
+            }
+        }
+        generation++;
+        notifyAll();
+    }
+
+    /**
+     * Handles the calls to the {@code ActivityLifecycleCallbacks} proxy.
+     *
+     */
+
+    private final class CallbackHandler implements InvocationHandler {
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            final String name = method.getName();
+            if ("equals".equals(name)) {
+                return Boolean.valueOf(proxy == args[0]);
+            }
+            if ("hashCode".equals(name)) {
+                return Integer.valueOf(System.identityHashCode(proxy));
+            }
+            if ("toString".equals(name)) {
+                return "Robotium ActivityLifecycleCallbacks";
+            }
+            if (args == null || args.length == 0 || !(args[0] instanceof Activity)) {
+                return null;
+            }
+            final Activity activity = (Activity) args[0];
+            if ("onActivityCreated".equals(name)) {
+                onLifecycleChanged(activity, false, false);
+            } else if ("onActivityResumed".equals(name)) {
+                onLifecycleChanged(activity, true, false);
+            } else if ("onActivityDestroyed".equals(name)) {
+                onLifecycleChanged(activity, false, true);
+            }
+            return null;
+        }
+    }
+}
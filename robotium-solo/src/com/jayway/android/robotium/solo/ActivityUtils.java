@@ -1,8 +1,6 @@
 package com.jayway.android.robotium.solo;
 
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
 
 import android.app.Activity;
 import android.app.Instrumentation;
@@ -23,11 +21,12 @@ class ActivityUtils {
 
     private final Instrumentation inst;
     private ActivityMonitor activityMonitor;
+    private final ActivityRegistry activityRegistry;
     private Activity activity;
     private final Sleeper sleeper;
-    private LinkedHashSet<Activity> activityList;
+    private final ActivityHistory activityHistory = new ActivityHistory();
     private final String LOG_TAG = "Robotium";
-    private final int MINISLEEP = 100;
+    private final int ACTIVITY_CHECK_INTERVAL = 500;
 
     /**
      * Constructs this object.
@@ -45,19 +44,20 @@ class ActivityUtils {
         this.inst = inst;
         this.activity = activity;
         this.sleeper = sleeper;
-        activityList = new LinkedHashSet<Activity>();
         setupActivityMonitor();
+        activityRegistry = new ActivityRegistry(inst, activity, activityHistory);
     }
 
     /**
-     * Returns a {@code List} of all the opened/active activities.
+     * Returns a {@code List} of all the opened/active activities. Activities that have been destroyed or garbage collected are not included, see
+     * {@link ActivityHistory}.
      * 
      * @return a {@code List} of all the opened/active activities
      * 
      */
 
     public ArrayList<Activity> getAllOpenedActivities() {
-        return new ArrayList<Activity>(activityList);
+        return activityHistory.getActivities();
     }
 
     /**
@@ -100,7 +100,7 @@ class ActivityUtils {
     }
 
     /**
-     * Returns the current {@code Activity}, after sleeping a default pause length.
+     * Returns the current {@code Activity}, after sleeping a default pause length if the activities are not tracked by lifecycle callbacks.
      * 
      * @return the current {@code Activity}
      * 
@@ -117,7 +117,11 @@ class ActivityUtils {
 
     private final void waitForActivityIfNotAvailable() {
         if (activity == null) {
-            if (activityMonitor != null) {
+            if (activityRegistry.isTracking()) {
+                while (activityRegistry.getCurrentActivity() == null) {
+                    sleeper.sleepMini();
+                }
+            } else if (activityMonitor != null) {
                 while (activityMonitor.getLastActivity() == null) {
                     sleeper.sleepMini();
                 }
@@ -130,15 +134,25 @@ class ActivityUtils {
     }
 
     /**
-     * Returns the current {@code Activity}.
+     * Returns the current {@code Activity}. If the activities are tracked by lifecycle callbacks, see {@link ActivityRegistry}, this is the most recently
+     * resumed {@code Activity} and is read without sleeping. Otherwise it is the {@code Activity} most recently seen by the {@code ActivityMonitor}.
      * 
      * @param shouldSleepFirst
-     *            whether to sleep a default pause first
+     *            whether to sleep a default pause first, which is skipped if the activities are tracked by lifecycle callbacks
      * @return the current {@code Activity}
      * 
      */
 
     public Activity getCurrentActivity(boolean shouldSleepFirst) {
+        if (activityRegistry.isTracking()) {
+            waitForActivityIfNotAvailable();
+            final Activity current = activityRegistry.getCurrentActivity();
+            if (current != null) {
+                activity = current;
+            }
+            activityHistory.add(activity);
+            return activity;
+        }
         if (shouldSleepFirst) {
             sleeper.sleep();
         }
@@ -148,10 +162,84 @@ class ActivityUtils {
             if (activityMonitor.getLastActivity() != null)
                 activity = activityMonitor.getLastActivity();
         }
-        activityList.add(activity);
+        activityHistory.add(activity);
         return activity;
     }
 
+    /**
+     * Waits for an {@link Activity} to become the current {@code Activity}. The lifecycle callbacks of the {@link ActivityRegistry} wake the wait up as
+     * soon as an {@code Activity} changes. Where they are not available, a temporary {@code ActivityMonitor} wakes it up when an {@code Activity} is
+     * created; an existing {@code Activity} that is resumed, e.g. after pressing Back, is only seen by the next check. The current {@code Activity} is
+     * checked again at least every {@code ACTIVITY_CHECK_INTERVAL} milliseconds.
+     * 
+     * @param name
+     *            the name of the {@code Activity} to wait for e.g. {@code "MyActivity"}
+     * @param timeout
+     *            the amount of time in milliseconds to wait
+     * @return {@code true} if the {@code Activity} is current before the timeout and {@code false} if it is not
+     * 
+     */
+
+    public boolean waitForActivity(String name, long timeout) {
+        final Clock clock = sleeper.getClock();
+        final long endTime = clock.getEndTime(timeout);
+        final boolean tracking = activityRegistry.isTracking();
+        ActivityMonitor monitor = null;
+        if (!tracking) {
+            try {
+                IntentFilter filter = null;
+                monitor = inst.addMonitor(filter, null, false);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        try {
+            while (true) {
+                final Activity lastCreated = monitor != null ? monitor.getLastActivity() : null;
+                final int generation = activityRegistry.getGeneration();
+                if (getCurrentActivity(false).getClass().getSimpleName().equals(name)) {
+                    return true;
+                }
+                final long remaining = endTime - clock.uptimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                final long interval = Math.min(remaining, ACTIVITY_CHECK_INTERVAL);
+                sleeper.getWaitAccounting().recordPoll();
+                if (tracking) {
+                    final long begin = clock.uptimeMillis();
+                    try {
+                        activityRegistry.awaitChange(generation, clock, interval);
+                    } catch (InterruptedException ignored) {
+                        // Cleared like an interrupted sleep, see Clock#sleep(long)
+                    } finally {
+                        sleeper.getWaitAccounting().recordWait(clock.uptimeMillis() - begin);
+                    }
+                } else if (monitor != null) {
+                    // The monitor is notified when an Activity is created. Its hits only count the matching starts, so compare the created Activity itself
+                    synchronized (monitor) {
+                        if (monitor.getLastActivity() == lastCreated) {
+                            final long begin = clock.uptimeMillis();
+                            try {
+                                clock.await(monitor, interval);
+                            } catch (InterruptedException ignored) {
+                                // Cleared like an interrupted sleep, see Clock#sleep(long)
+                            } finally {
+                                sleeper.getWaitAccounting().recordWait(clock.uptimeMillis() - begin);
+                            }
+                        }
+                    }
+                } else {
+                    sleeper.sleep((int) interval);
+                }
+            }
+        } finally {
+            if (monitor != null) {
+                inst.removeMonitor(monitor);
+            }
+        }
+    }
+
     /**
      * Returns to the given {@link Activity}.
      * 
@@ -171,10 +259,19 @@ class ActivityUtils {
         }
         if (found) {
             while (!getCurrentActivity().getClass().getSimpleName().equals(name)) {
+                final int generation = activityRegistry.getGeneration();
                 try {
                     inst.sendKeyDownUpSync(KeyEvent.KEYCODE_BACK);
                 } catch (SecurityException ignored) {
                 }
+                if (activityRegistry.isTracking()) {
+                    // getCurrentActivity() does not sleep, so give Back the time to resume the previous Activity
+                    try {
+                        activityRegistry.awaitChange(generation, sleeper.getClock(), sleeper.getTimingProfile().getPause());
+                    } catch (InterruptedException ignored) {
+                        // Cleared like an interrupted sleep, see Clock#sleep(long)
+                    }
+                }
             }
         } else {
             for (int i = 0; i < activitiesOpened.size(); i++)
@@ -209,6 +306,7 @@ class ActivityUtils {
             if (activityMonitor != null) {
                 inst.removeMonitor(activityMonitor);
             }
+            activityRegistry.close();
         } catch (Exception ignored) {
         }
         super.finalize();
@@ -216,7 +314,8 @@ class ActivityUtils {
 
     /**
      * 
-     * All activites that have been opened are finished.
+     * All activites that have been opened are finished. The lifecycle callbacks of the {@link ActivityRegistry} are unregistered, so that they no longer
+     * hold the application under test; activities are tracked by the {@code ActivityMonitor} afterwards.
      * 
      */
 
@@ -224,7 +323,7 @@ class ActivityUtils {
         ArrayList<Activity> activitiesOpened = getAllOpenedActivities();
         // Finish all opened activities
         for (int i = activitiesOpened.size() - 1; i >= 0; i--) {
-            sleeper.sleep(MINISLEEP);
+            sleeper.sleepMinimal();
             finishActivity(activitiesOpened.get(i));
         }
         // Finish the initial activity, pressing Back for good measure
@@ -232,23 +331,24 @@ class ActivityUtils {
         sleeper.sleepMini();
         try {
             inst.sendKeyDownUpSync(KeyEvent.KEYCODE_BACK);
-            sleeper.sleep(MINISLEEP);
+            sleeper.sleepMinimal();
             inst.sendKeyDownUpSync(KeyEvent.KEYCODE_BACK);
         } catch (Throwable ignored) {
             // Guard against lack of INJECT_EVENT permission
         }
-        activityList.clear();
+        activityRegistry.close();
+        activityHistory.clear();
     }
 
     /**
      * All inactive activities are finished.
      */
     public void finishInactiveActivities() {
-        for (Iterator<Activity> iter = activityList.iterator(); iter.hasNext();) {
-            final Activity activity = iter.next();
-            if (activity != getCurrentActivity()) {
+        final Activity currentActivity = getCurrentActivity();
+        for (Activity activity : activityHistory.getActivities()) {
+            if (activity != currentActivity) {
                 finishActivity(activity);
-                iter.remove();
+                activityHistory.remove(activity);
             }
         }
     }
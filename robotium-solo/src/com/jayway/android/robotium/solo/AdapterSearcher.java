@@ -0,0 +1,228 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+
+import android.app.Instrumentation;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.Adapter;
+import android.widget.TextView;
+
+/**
+ * Searches the rows of a list through its {@code Adapter} instead of scrolling through it page by page. The text of a row is read from
+ * {@code getItem()} if the item is a {@code CharSequence}; otherwise the row is bound with {@code getView()} into a detached scratch view, one per view
+ * type, and the texts of its text views are read. The whole list is scanned in one pass on the UI thread, and the list is then moved to the matching row
+ * with a single {@code setSelection()}.
+ *
+ * Matches are counted per text view within the rows of the list; views outside the list are not counted. Adapter search is off by default, see
+ * {@link Solo#setAdapterSearch(boolean)}.
+ *
+ */
+
+class AdapterSearcher {
+
+    private final Instrumentation inst;
+    private final ViewFetcher viewFetcher;
+    private volatile boolean enabled;
+
+    /**
+     * Constructs this object.
+     *
+     * @param inst
+     *            the {@code Instrumentation} instance, or {@code null} to bind rows on the calling thread
+     * @param viewFetcher
+     *            the {@code ViewFetcher} instance
+     */
+
+    public AdapterSearcher(Instrumentation inst, ViewFetcher viewFetcher) {
+        this.inst = inst;
+        this.viewFetcher = viewFetcher;
+    }
+
+    /**
+     * Turns adapter search on or off.
+     *
+     * @param enabled
+     *            {@code true} if lists should be searched through their adapters
+     */
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Checks if adapter search is on.
+     *
+     * @return {@code true} if lists are searched through their adapters
+     */
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Finds the text view with the given match of a regex in the rows of the shown list, scrolls its row into view and returns it.
+     *
+     * @param viewClass
+     *            what kind of text view to count, e.g. {@code Button.class} or {@code TextView.class}
+     * @param regex
+     *            the text to search for. The parameter <strong>will</strong> be interpreted as a regular expression.
+     * @param match
+     *            the match to find, {@code 1} for the first
+     * @return the shown text view, or {@code null} if there is no shown list, the list has fewer matches or its adapter could not be read
+     */
+
+    public TextView scrollToMatch(Class<? extends TextView> viewClass, String regex, int match) {
+        final AbsListView list = viewFetcher.getSnapshot().getMostRecentlyDrawnView(AbsListView.class, true, true);
+        if (list == null) {
+            return null;
+        }
+        final int[] found = findMatch(list, viewClass, regex, Math.max(match, 1));
+        if (found == null) {
+            return null;
+        }
+        final int position = found[0];
+        final int matchInRow = found[1];
+
+        final UiChangeTracker uiChangeTracker = viewFetcher.getUiChangeTracker();
+        final Clock clock = viewFetcher.getClock();
+        final long endTime = clock.getEndTime(viewFetcher.getTimingProfile().getSettleTimeout());
+        final int generation = uiChangeTracker.getGeneration();
+        runOnMainSync(new Runnable() {
+            public void run() {
+                list.setSelection(position);
+            }
+        });
+        uiChangeTracker.awaitChange(generation, endTime);
+
+        while (true) {
+            final int currentGeneration = uiChangeTracker.getGeneration();
+            final TextView textView = getShownMatch(list, position, viewClass, regex, matchInRow);
+            if (textView != null || clock.uptimeMillis() >= endTime) {
+                return textView;
+            }
+            uiChangeTracker.awaitChange(currentGeneration, endTime);
+        }
+    }
+
+    /**
+     * Scans the adapter of a list on the UI thread.
+     *
+     * @return the adapter position of the row with the match and the number of the match within the row, or {@code null} if not found
+     */
+
+    private int[] findMatch(final AbsListView list, final Class<? extends TextView> viewClass, final String regex, final int match) {
+        final int[][] result = new int[1][];
+        runOnMainSync(new Runnable() {
+            public void run() {
+                try {
+                    result[0] = scan(list, viewClass, PatternCache.getMatcher(regex), match);
+                } catch (RuntimeException ignored) {
+                    // An adapter that cannot bind detached rows is searched by scrolling
+                }
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Scans all rows of the adapter of a list. Must run on the UI thread.
+     */
+
+    private int[] scan(AbsListView list, Class<? extends TextView> viewClass, TextMatcher matcher, int match) {
+        final Adapter adapter = list.getAdapter();
+        if (adapter == null) {
+            return null;
+        }
+        final View[] scratchViews = new View[Math.max(adapter.getViewTypeCount(), 1)];
+        final ArrayList<TextView> textViews = new ArrayList<TextView>();
+        int matches = 0;
+
+        for (int position = 0; position < adapter.getCount(); position++) {
+            final Object item = adapter.getItem(position);
+            if (item instanceof CharSequence && viewClass.isAssignableFrom(TextView.class)) {
+                if (matcher.find(item.toString()) && ++matches == match) {
+                    return new int[] { position, 1 };
+                }
+                continue;
+            }
+            final int viewType = adapter.getItemViewType(position);
+            final boolean recyclable = viewType >= 0 && viewType < scratchViews.length;
+            final View row = adapter.getView(position, recyclable ? scratchViews[viewType] : null, list);
+            if (recyclable) {
+                scratchViews[viewType] = row;
+            }
+            textViews.clear();
+            addTextViews(row, viewClass, textViews);
+            int matchInRow = 0;
+            for (TextView textView : textViews) {
+                if (matches(matcher, textView)) {
+                    matchInRow++;
+                    if (++matches == match) {
+                        return new int[] { position, matchInRow };
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the text view with the given match in a shown row of a list, read from the current snapshot.
+     */
+
+    private TextView getShownMatch(AbsListView list, int position, Class<? extends TextView> viewClass, String regex, int matchInRow) {
+        int matches = 0;
+        for (ViewNode node : viewFetcher.getSnapshot().getNodes(viewClass, false, true)) {
+            if (node.getAdapterView() == list && node.getAdapterPosition() == position && RobotiumUtils.matches(regex, node) && ++matches == matchInRow) {
+                return (TextView) node.getView();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a view and its descendants that are instances of the given class, in traversal order.
+     */
+
+    private static void addTextViews(View view, Class<? extends TextView> viewClass, ArrayList<TextView> textViews) {
+        if (viewClass.isInstance(view)) {
+            textViews.add((TextView) view);
+        }
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                addTextViews(group.getChildAt(i), viewClass, textViews);
+            }
+        }
+    }
+
+    /**
+     * Checks if a text view matches, like {@link RobotiumUtils#matches(String, ViewNode)}.
+     */
+
+    private static boolean matches(TextMatcher matcher, TextView textView) {
+        final String text = textView.getText().toString();
+        if (matcher.find(text)) {
+            return true;
+        }
+        if (textView.getError() != null && matcher.find(textView.getError().toString())) {
+            return true;
+        }
+        return text.equals("") && textView.getHint() != null && matcher.find(textView.getHint().toString());
+    }
+
+    /**
+     * Runs a {@code Runnable} on the UI thread and waits for it to finish.
+     */
+
+    private void runOnMainSync(Runnable runnable) {
+        if (inst == null || Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            inst.runOnMainSync(runnable);
+        }
+    }
+}
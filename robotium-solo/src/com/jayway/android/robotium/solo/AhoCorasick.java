@@ -0,0 +1,191 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+
+/**
+ * An Aho-Corasick automaton over a fixed set of literals. Finds which of the literals occur in a text in a single pass over the text, independent of the
+ * number of literals.
+ *
+ */
+
+class AhoCorasick {
+
+    private char[][] keys;
+    private int[][] targets;
+    private int[] keyCounts;
+    private int[] failures;
+    private int[][] outputs;
+    private int stateCount;
+
+    /**
+     * Builds the automaton.
+     *
+     * @param literals
+     *            the literals to search for. A literal is reported by its index in this array
+     */
+
+    public AhoCorasick(String[] literals) {
+        int capacity = 1;
+        for (String literal : literals) {
+            capacity += literal.length();
+        }
+        keys = new char[capacity][];
+        targets = new int[capacity][];
+        keyCounts = new int[capacity];
+        failures = new int[capacity];
+        outputs = new int[capacity][];
+        stateCount = 1;
+
+        final ArrayList<ArrayList<Integer>> terminals = new ArrayList<ArrayList<Integer>>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            terminals.add(null);
+        }
+        for (int i = 0; i < literals.length; i++) {
+            int state = 0;
+            for (int j = 0; j < literals[i].length(); j++) {
+                final char c = literals[i].charAt(j);
+                int next = next(state, c);
+                if (next < 0) {
+                    next = stateCount++;
+                    addTransition(state, c, next);
+                }
+                state = next;
+            }
+            if (terminals.get(state) == null) {
+                terminals.set(state, new ArrayList<Integer>(1));
+            }
+            terminals.get(state).add(i);
+        }
+        buildFailures(terminals);
+    }
+
+    /**
+     * Marks the literals that occur in a text.
+     *
+     * @param text
+     *            the text to search
+     * @param found
+     *            set to {@code true} at the index of every literal that occurs in {@code text}. Entries of literals that do not occur are not changed
+     */
+
+    public void search(String text, boolean[] found) {
+        mark(0, found);
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            int next = next(state, c);
+            while (next < 0 && state != 0) {
+                state = failures[state];
+                next = next(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            mark(state, found);
+        }
+    }
+
+    /**
+     * Marks the literals that end in a state.
+     */
+
+    private void mark(int state, boolean[] found) {
+        final int[] output = outputs[state];
+        if (output != null) {
+            for (int literal : output) {
+                found[literal] = true;
+            }
+        }
+    }
+
+    /**
+     * Computes the failure links and merges the output of every state with the output of its failure state, breadth first.
+     *
+     * @param terminals
+     *            the literals ending in each state
+     */
+
+    private void buildFailures(ArrayList<ArrayList<Integer>> terminals) {
+        final int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        outputs[0] = toArray(terminals.get(0), null);
+        for (int k = 0; k < keyCounts[0]; k++) {
+            final int child = targets[0][k];
+            failures[child] = 0;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            final int state = queue[head++];
+            outputs[state] = toArray(terminals.get(state), outputs[failures[state]]);
+            for (int k = 0; k < keyCounts[state]; k++) {
+                final char c = keys[state][k];
+                final int child = targets[state][k];
+                int failure = failures[state];
+                int next = next(failure, c);
+                while (next < 0 && failure != 0) {
+                    failure = failures[failure];
+                    next = next(failure, c);
+                }
+                failures[child] = next < 0 || next == child ? 0 : next;
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Returns the state reached from {@code state} with {@code c}, or {@code -1} if there is no transition.
+     */
+
+    private int next(int state, char c) {
+        final char[] stateKeys = keys[state];
+        for (int k = 0; k < keyCounts[state]; k++) {
+            if (stateKeys[k] == c) {
+                return targets[state][k];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a transition, growing the transition arrays of {@code state} when needed.
+     */
+
+    private void addTransition(int state, char c, int target) {
+        final int count = keyCounts[state];
+        if (keys[state] == null) {
+            keys[state] = new char[2];
+            targets[state] = new int[2];
+        } else if (count == keys[state].length) {
+            final char[] grownKeys = new char[count * 2];
+            final int[] grownTargets = new int[count * 2];
+            System.arraycopy(keys[state], 0, grownKeys, 0, count);
+            System.arraycopy(targets[state], 0, grownTargets, 0, count);
+            keys[state] = grownKeys;
+            targets[state] = grownTargets;
+        }
+        keys[state][count] = c;
+        targets[state][count] = target;
+        keyCounts[state] = count + 1;
+    }
+
+    /**
+     * Concatenates the literals ending in a state with the output of its failure state.
+     *
+     * @return the combined output, or {@code null} if empty
+     */
+
+    private static int[] toArray(ArrayList<Integer> own, int[] inherited) {
+        final int ownCount = own != null ? own.size() : 0;
+        final int inheritedCount = inherited != null ? inherited.length : 0;
+        if (ownCount + inheritedCount == 0) {
+            return null;
+        }
+        final int[] array = new int[ownCount + inheritedCount];
+        for (int i = 0; i < ownCount; i++) {
+            array[i] = own.get(i);
+        }
+        if (inheritedCount > 0) {
+            System.arraycopy(inherited, 0, array, ownCount, inheritedCount);
+        }
+        return array;
+    }
+}
@@ -1,5 +1,7 @@
 package com.jayway.android.robotium.solo;
 
+import java.util.ArrayList;
+
 import android.app.Activity;
 import android.app.ActivityManager;
 
@@ -96,8 +98,9 @@ class Asserter {
         boolean found = false;
         assertCurrentActivity(message, expectedClass);
         Activity activity = activityUtils.getCurrentActivity(false);
-        for (int i = 0; i < activityUtils.getAllOpenedActivities().size() - 1; i++) {
-            String instanceString = activityUtils.getAllOpenedActivities().get(i).toString();
+        final ArrayList<Activity> openedActivities = activityUtils.getAllOpenedActivities();
+        for (int i = 0; i < openedActivities.size() - 1; i++) {
+            String instanceString = openedActivities.get(i).toString();
             if (instanceString.equals(activity.toString()))
                 found = true;
         }
@@ -18,17 +18,20 @@ class Checker {
 	
 	private final ViewFetcher viewFetcher;
 	private final Waiter waiter;
+	private final TimingProfile timingProfile;
 
 	/**
 	 * Constructs this object.
 	 * 
 	 * @param viewFetcher the {@code ViewFetcher} instance.
      * @param waiter the {@code Waiter} instance
+	 * @param sleeper the {@code Sleeper} instance
 	 */
 	
-	public Checker(ViewFetcher viewFetcher, Waiter waiter){
+	public Checker(ViewFetcher viewFetcher, Waiter waiter, Sleeper sleeper){
 		this.viewFetcher = viewFetcher;
 		this.waiter = waiter;
+		this.timingProfile = sleeper.getTimingProfile();
 	}
 
 	
@@ -55,10 +58,10 @@ class Checker {
 	
 	public <T extends CompoundButton> boolean isButtonChecked(Class<T> expectedClass, String text)
 	{
-		waiter.waitForText(text, 0, 10000);
-		ArrayList<T> list = viewFetcher.getCurrentViews(expectedClass);
-		for(T button : list){
-			if(button.getText().equals(text) && button.isChecked())
+		waiter.waitForText(text, 0, timingProfile.getSmallTimeout());
+		ArrayList<ViewNode> list = viewFetcher.getSnapshot().getNodes(expectedClass, true, false);
+		for(ViewNode button : list){
+			if(button.getText().equals(text) && viewFetcher.isChecked(button.getView()))
 				return true;
 		}
 		return false;
@@ -74,10 +77,10 @@ class Checker {
 	
 	public boolean isCheckedTextChecked(String text)
 	{
-		waiter.waitForText(text, 0, 10000);
-		ArrayList<CheckedTextView> list = viewFetcher.getCurrentViews(CheckedTextView.class);
-		for(CheckedTextView checkedText : list){
-			if(checkedText.getText().equals(text) && checkedText.isChecked())
+		waiter.waitForText(text, 0, timingProfile.getSmallTimeout());
+		ArrayList<ViewNode> list = viewFetcher.getSnapshot().getNodes(CheckedTextView.class, true, false);
+		for(ViewNode checkedText : list){
+			if(checkedText.getText().equals(text) && viewFetcher.isChecked(checkedText.getView()))
 				return true;
 		}
 		return false;
@@ -95,9 +98,11 @@ class Checker {
 	{
 		waiter.waitForAndGetView(0, Spinner.class);
 				
-		ArrayList<Spinner> spinnerList = viewFetcher.getCurrentViews(Spinner.class);
-		for(int i = 0; i < spinnerList.size(); i++){
-			if(isSpinnerTextSelected(i, text))
+		final ViewSnapshot snapshot = viewFetcher.getSnapshot();
+		ArrayList<ViewNode> spinnerList = snapshot.getNodes(Spinner.class, true, false);
+		for(ViewNode spinner : spinnerList){
+			ViewNode selected = snapshot.getFirstChild(spinner);
+			if(selected != null && text.equals(selected.getText()))
 					return true;
 		}
 		return false;
@@ -3,7 +3,6 @@ package com.jayway.android.robotium.solo;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 import android.app.Instrumentation;
 import android.graphics.RectF;
@@ -34,24 +33,31 @@ class Clicker {
     private final Instrumentation inst;
     private final RobotiumUtils robotiumUtils;
     private final Sleeper sleeper;
+    private final Clock clock;
+    private final TimingProfile timingProfile;
     private final Waiter waiter;
     private final Searcher searcher;
     private final WebViewUtils mWebViewUtils;
-    private final int TIMEOUT = 10000;
-    private final int MINISLEEP = 100;
-    Set<TextView> uniqueTextViews;
+    private final AdapterSearcher adapterSearcher;
 
     public Clicker(ViewFetcher viewFetcher, Scroller scroller, RobotiumUtils robotiumUtils, Instrumentation inst, Sleeper sleeper, Waiter waiter,
-            Searcher searcher, WebViewUtils webViewUtils) {
+            Searcher searcher, WebViewUtils webViewUtils, AdapterSearcher adapterSearcher) {
         this.viewFetcher = viewFetcher;
         this.scroller = scroller;
         this.robotiumUtils = robotiumUtils;
         this.inst = inst;
         this.sleeper = sleeper;
+        this.clock = sleeper.getClock();
+        this.timingProfile = sleeper.getTimingProfile();
         this.waiter = waiter;
         this.searcher = searcher;
         mWebViewUtils = webViewUtils;
-        uniqueTextViews = new HashSet<TextView>();
+        this.adapterSearcher = adapterSearcher;
+    }
+
+    public Clicker(ViewFetcher viewFetcher, Scroller scroller, RobotiumUtils robotiumUtils, Instrumentation inst, Sleeper sleeper, Waiter waiter,
+            Searcher searcher, WebViewUtils webViewUtils) {
+        this(viewFetcher, scroller, robotiumUtils, inst, sleeper, waiter, searcher, webViewUtils, new AdapterSearcher(inst, viewFetcher));
     }
 
     public Clicker(ViewFetcher viewFetcher, Scroller scroller, RobotiumUtils robotiumUtils, Instrumentation inst, Sleeper sleeper, Waiter waiter,
@@ -99,7 +105,7 @@ class Clicker {
         try {
             inst.sendPointerSync(event);
             inst.sendPointerSync(event2);
-            sleeper.sleep(MINISLEEP);
+            sleeper.pause(timingProfile.getMiniSleep());
         } catch (SecurityException e) {
             Assert.assertTrue("Click can not be completed!", false);
         }
@@ -281,34 +287,69 @@ class Clicker {
      */
 
     public void clickOnText(String regex, boolean longClick, int match, boolean scroll, int time) {
-        waiter.waitForText(regex, 0, TIMEOUT, scroll, true);
-        TextView textToClick = null;
-        ArrayList<TextView> allTextViews = viewFetcher.getCurrentViews(TextView.class);
-        allTextViews = RobotiumUtils.removeInvisibleViews(allTextViews);
+        final Deadline deadline = new Deadline(clock, timingProfile.getSmallTimeout());
+        if (scroll && adapterSearcher.isEnabled()) {
+            final long begin = deadline.begin();
+            final TextView textToClick = adapterSearcher.scrollToMatch(TextView.class, regex, match);
+            deadline.spend("adapterSearch", begin);
+            if (textToClick != null) {
+                clickOnScreen(textToClick, longClick, time);
+                return;
+            }
+        }
+        clickOnText(regex, longClick, match, scroll, time, new HashSet<TextView>(), deadline);
+    }
+
+    /**
+     * Clicks on a specific {@link TextView} displaying a given text, counting matches in a set owned by the calling {@code clickOnText}. Waiting and
+     * scrolling share one budget, so the click fails after the small timeout of the {@link TimingProfile} however many pages are scrolled.
+     * 
+     * @param uniqueTextViews
+     *            the text views matched so far, on this and on previously scrolled pages
+     * @param deadline
+     *            the budget of the calling {@code clickOnText}
+     */
+
+    private void clickOnText(final String regex, boolean longClick, int match, boolean scroll, int time, final Set<TextView> uniqueTextViews,
+            final Deadline deadline) {
+        waiter.waitForText(regex, 0, deadline, scroll, true);
         if (match == 0) {
             match = 1;
         }
-        for (TextView textView : allTextViews) {
-            if (RobotiumUtils.checkAndGetMatches(regex, textView, uniqueTextViews) == match) {
-                uniqueTextViews.clear();
-                textToClick = textView;
-                break;
+        final int matchToClick = match;
+        final ArrayList<TextView> allTextViews = new ArrayList<TextView>();
+        final TextView[] matchingTextView = new TextView[1];
+        viewFetcher.visit(new ViewVisitor() {
+            public Result visit(View view, boolean sufficientlyShown) {
+                if (view.getVisibility() != View.VISIBLE) {
+                    // Nothing below a hidden view is shown
+                    return Result.SKIP_SUBTREE;
+                }
+                if (sufficientlyShown && view instanceof TextView && view.isShown()) {
+                    final TextView textView = (TextView) view;
+                    allTextViews.add(textView);
+                    if (RobotiumUtils.checkAndGetMatches(regex, textView, uniqueTextViews) == matchToClick) {
+                        matchingTextView[0] = textView;
+                        return Result.STOP;
+                    }
+                }
+                return Result.CONTINUE;
             }
-        }
+        }, true);
+        final TextView textToClick = matchingTextView[0];
         if (textToClick != null) {
             clickOnScreen(textToClick, longClick, time);
-        } else if (scroll && scroller.scroll(Scroller.DOWN)) {
-            clickOnText(regex, longClick, match, scroll, time);
+        } else if (scroll && !deadline.isExpired() && scroller.scroll(Scroller.DOWN, deadline)) {
+            clickOnText(regex, longClick, match, scroll, time, uniqueTextViews, deadline);
         } else {
             int sizeOfUniqueTextViews = uniqueTextViews.size();
-            uniqueTextViews.clear();
             if (sizeOfUniqueTextViews > 0)
-                Assert.assertTrue("There are only " + sizeOfUniqueTextViews + " matches of " + regex, false);
+                Assert.assertTrue("There are only " + sizeOfUniqueTextViews + " matches of " + regex + " (" + deadline.describe() + ")", false);
             else {
                 for (TextView textView : allTextViews) {
                     Log.d(LOG_TAG, regex + " not found. Have found: " + textView.getText());
                 }
-                Assert.assertTrue("The text: " + regex + " is not found!", false);
+                Assert.assertTrue("The text: " + regex + " is not found! (" + deadline.describe() + ")", false);
             }
         }
     }
@@ -322,15 +363,14 @@ class Clicker {
      *            whether to scroll to find the regex
      */
     public <T extends TextView> void clickOnAny(String nameRegex, boolean scroll) {
-        final Pattern pattern = Pattern.compile(nameRegex);
-        waiter.waitForText(nameRegex, 0, TIMEOUT, true, true);
-        ArrayList<View> views = viewFetcher.getCurrentViews(View.class);
-        views = RobotiumUtils.removeInvisibleViews(views);
+        final TextMatcher matcher = PatternCache.getMatcher(nameRegex);
+        waiter.waitForText(nameRegex, 0, timingProfile.getSmallTimeout(), true, true);
+        ArrayList<View> views = viewFetcher.getCurrentShownViews(View.class);
         T viewToClick = null;
         for (View v : views) {
             if (v instanceof TextView) {
                 T tv = (T) v;
-                if (pattern.matcher(tv.getText()).matches()) {
+                if (matcher.matches(tv.getText().toString())) {
                     viewToClick = tv;
                     if (viewToClick.isShown())
                         break;
@@ -360,13 +400,12 @@ class Clicker {
      *            the name of the view presented to the user. The parameter <strong>will</strong> be interpreted as a regular expression.
      */
     public <T extends TextView> void clickOn(Class<T> viewClass, String nameRegex) {
-        final Pattern pattern = Pattern.compile(nameRegex);
-        waiter.waitForText(nameRegex, 0, TIMEOUT, true, true);
-        ArrayList<T> views = viewFetcher.getCurrentViews(viewClass);
-        views = RobotiumUtils.removeInvisibleViews(views);
+        final TextMatcher matcher = PatternCache.getMatcher(nameRegex);
+        waiter.waitForText(nameRegex, 0, timingProfile.getSmallTimeout(), true, true);
+        ArrayList<T> views = viewFetcher.getCurrentShownViews(viewClass);
         T viewToClick = null;
         for (T view : views) {
-            if (pattern.matcher(view.getText().toString()).matches()) {
+            if (matcher.matches(view.getText().toString())) {
                 viewToClick = view;
                 if (viewToClick.isShown())
                     break;
@@ -478,7 +517,7 @@ class Clicker {
     public <T extends View> void clickOnUnattached(Class<T> viewClass, String nameRegex, int locationOfText) {
         final ArrayList<View> views = searcher.searchWithTimeoutFor(TextView.class, nameRegex, 1, true, true) ? viewFetcher.getViews(null, true) : viewFetcher
                 .getAllViews(null);
-        final Pattern pattern = Pattern.compile(nameRegex);
+        final TextMatcher matcher = PatternCache.getMatcher(nameRegex);
         boolean found = false;
         View target = null;
         for (View view : views) {
@@ -488,7 +527,7 @@ class Clicker {
                     break;
                 }
             } else if (view instanceof TextView) {
-                if (pattern.matcher(((TextView) view).getText().toString()).matches()) {
+                if (matcher.matches(((TextView) view).getText().toString())) {
                     found = true;
                     if (locationOfText == Constants.LOCATION_BELOW) {
                         break;
@@ -0,0 +1,97 @@
+package com.jayway.android.robotium.solo;
+
+/**
+ * The time source of all timeouts, pauses and polling waits of {@link Solo}. {@link #SYSTEM} runs on real time; a {@link VirtualClock} advances
+ * instantly instead of blocking, so the timeout paths of the wait, search and scroll methods can be run in milliseconds on a plain JVM. A clock is set
+ * with {@link Solo#Solo(android.app.Instrumentation, android.app.Activity, BaseExtensionUtils, Clock)}.
+ *
+ */
+
+public abstract class Clock {
+
+    /**
+     * The real time clock. Its time is monotonic, it does not jump when the wall clock is set.
+     */
+
+    public static final Clock SYSTEM = new SystemClock();
+
+    /**
+     * Constructs a clock.
+     */
+
+    protected Clock() {
+    }
+
+    /**
+     * Returns the current time. Only differences between two times are meaningful.
+     *
+     * @return the current time in milliseconds
+     */
+
+    public abstract long uptimeMillis();
+
+    /**
+     * Sleeps the current thread. An interrupt ends the sleep early and is cleared, as the pauses of Robotium have always done, so the waits of
+     * {@link Solo} keep running until their timeouts instead of spinning with the interrupt status set.
+     *
+     * @param millis
+     *            the length of the sleep in milliseconds
+     */
+
+    public abstract void sleep(long millis);
+
+    /**
+     * Waits on a monitor until it is notified or the time has passed, as {@link Object#wait(long)}. The calling thread must own the monitor.
+     *
+     * @param lock
+     *            the monitor to wait on
+     * @param millis
+     *            the maximum time to wait in milliseconds, greater than {@code 0}
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+
+    public abstract void await(Object lock, long millis) throws InterruptedException;
+
+    /**
+     * Returns the time a timeout starting now ends at.
+     *
+     * @param timeout
+     *            the timeout in milliseconds
+     * @return the end time, {@link Long#MAX_VALUE} if the timeout does not fit
+     */
+
+    final long getEndTime(long timeout) {
+        final long now = uptimeMillis();
+        return timeout > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeout;
+    }
+
+    private static final class SystemClock extends Clock {
+
+        @Override
+        public long uptimeMillis() {
+            return System.nanoTime() / 1000000L;
+        }
+
+        @Override
+        public void sleep(long millis) {
+            if (millis <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        @Override
+        public void await(Object lock, long millis) throws InterruptedException {
+            lock.wait(millis);
+        }
+
+        @Override
+        public String toString() {
+            return "Clock.SYSTEM";
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.jayway.android.robotium.solo;
+
+/**
+ * A condition on the state of the UI that {@link Solo#waitFor(Condition, int)} waits for. Conditions are created and combined with the factory methods
+ * of {@link Conditions}, e.g. {@code Conditions.any(Conditions.text("Done"), Conditions.dialog())}.
+ *
+ * All leaf conditions of a combined condition are evaluated against the same view snapshot, so within one check they see one consistent state of the UI
+ * and the views are fetched only once.
+ *
+ */
+
+public abstract class Condition {
+
+    Condition() {
+    }
+
+    /**
+     * Evaluates this condition.
+     *
+     * @param context
+     *            the state of the UI shared by all conditions evaluated in the same check
+     * @return the condition that satisfied this condition, i.e. this condition or for {@link Conditions#any(Condition...)} the satisfied branch, or
+     *         {@code null} if this condition is not satisfied
+     */
+
+    abstract Condition evaluate(ConditionContext context);
+
+    /**
+     * Returns a description of this condition, e.g. {@code any(text("Done"), dialog())}.
+     *
+     * @return the description
+     */
+
+    @Override
+    public abstract String toString();
+}
@@ -0,0 +1,71 @@
+package com.jayway.android.robotium.solo;
+
+import android.app.Activity;
+
+/**
+ * The state of the UI that the conditions of one check are evaluated against. The view snapshot, the current {@code Activity} and the number of windows
+ * are fetched on first use and then shared by all conditions of the check.
+ *
+ */
+
+class ConditionContext {
+
+    private final ViewFetcher viewFetcher;
+    private final ActivityUtils activityUtils;
+    private ViewSnapshot snapshot;
+    private Activity activity;
+    private int windowCount = -1;
+
+    /**
+     * Constructs the context of one check.
+     *
+     * @param viewFetcher
+     *            the {@code ViewFetcher} instance
+     * @param activityUtils
+     *            the {@code ActivityUtils} instance
+     */
+
+    public ConditionContext(ViewFetcher viewFetcher, ActivityUtils activityUtils) {
+        this.viewFetcher = viewFetcher;
+        this.activityUtils = activityUtils;
+    }
+
+    /**
+     * Returns the view snapshot of this check.
+     *
+     * @return the snapshot
+     */
+
+    public ViewSnapshot getSnapshot() {
+        if (snapshot == null) {
+            snapshot = viewFetcher.getSnapshot();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the current {@code Activity} of this check.
+     *
+     * @return the current {@code Activity}
+     */
+
+    public Activity getActivity() {
+        if (activity == null) {
+            activity = activityUtils.getCurrentActivity(false);
+        }
+        return activity;
+    }
+
+    /**
+     * Returns the number of windows shown in this check.
+     *
+     * @return the number of windows
+     */
+
+    public int getWindowCount() {
+        if (windowCount < 0) {
+            windowCount = viewFetcher.getWindowCount();
+        }
+        return windowCount;
+    }
+}
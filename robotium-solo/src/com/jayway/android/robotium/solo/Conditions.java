@@ -0,0 +1,314 @@
+package com.jayway.android.robotium.solo;
+
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * Creates and combines the conditions that {@link Solo#waitFor(Condition, int)} waits for. Leaf conditions check the views, the current
+ * {@code Activity} or the shown windows; {@link #any(Condition...)}, {@link #all(Condition...)} and {@link #not(Condition)} combine them.
+ *
+ * Example:
+ *
+ * <pre>
+ * Condition done = Conditions.text(&quot;Done&quot;);
+ * Condition failed = Conditions.any(Conditions.text(&quot;Error&quot;), Conditions.activity(&quot;LoginActivity&quot;));
+ * assertSame(done, solo.waitFor(Conditions.any(done, failed), 10000));
+ * </pre>
+ *
+ */
+
+public final class Conditions {
+
+    private Conditions() {
+    }
+
+    /**
+     * Returns a condition that is satisfied when a text is shown.
+     *
+     * @param regex
+     *            the text to wait for. The parameter <strong>will</strong> be interpreted as a regular expression.
+     * @return the condition
+     */
+
+    public static Condition text(String regex) {
+        return text(regex, 1);
+    }
+
+    /**
+     * Returns a condition that is satisfied when a text is shown in a minimum number of text views.
+     *
+     * @param regex
+     *            the text to wait for. The parameter <strong>will</strong> be interpreted as a regular expression.
+     * @param minimumNumberOfMatches
+     *            the minimum number of text views that must show the text. {@code 0} means one or more
+     * @return the condition
+     */
+
+    public static Condition text(String regex, int minimumNumberOfMatches) {
+        return new TextCondition(regex, Math.max(minimumNumberOfMatches, 1));
+    }
+
+    /**
+     * Returns a condition that is satisfied when a view of a given class is shown.
+     *
+     * @param viewClass
+     *            the {@code View} class to wait for
+     * @return the condition
+     */
+
+    public static Condition view(Class<? extends View> viewClass) {
+        return new ViewClassCondition(viewClass);
+    }
+
+    /**
+     * Returns a condition that is satisfied when a view with a given id is shown.
+     *
+     * @param id
+     *            the R.id of the {@code View} to wait for
+     * @return the condition
+     */
+
+    public static Condition id(int id) {
+        return new IdCondition(id);
+    }
+
+    /**
+     * Returns a condition that is satisfied when a given {@code Activity} is the current {@code Activity}.
+     *
+     * @param name
+     *            the name of the {@code Activity} to wait for, e.g. {@code "MyActivity"}
+     * @return the condition
+     */
+
+    public static Condition activity(String name) {
+        return new ActivityCondition(name);
+    }
+
+    /**
+     * Returns a condition that is satisfied when a dialog, or any other window, is shown above the {@code Activity}.
+     *
+     * @return the condition
+     */
+
+    public static Condition dialog() {
+        return new DialogCondition();
+    }
+
+    /**
+     * Returns a condition that is satisfied when any of the given conditions is satisfied. The conditions are evaluated in order and the first satisfied
+     * one is reported as the satisfied branch.
+     *
+     * @param conditions
+     *            the conditions
+     * @return the condition
+     */
+
+    public static Condition any(Condition... conditions) {
+        return new AnyCondition(conditions.clone());
+    }
+
+    /**
+     * Returns a condition that is satisfied when all of the given conditions are satisfied.
+     *
+     * @param conditions
+     *            the conditions
+     * @return the condition
+     */
+
+    public static Condition all(Condition... conditions) {
+        return new AllCondition(conditions.clone());
+    }
+
+    /**
+     * Returns a condition that is satisfied when the given condition is not satisfied.
+     *
+     * @param condition
+     *            the condition to negate
+     * @return the condition
+     */
+
+    public static Condition not(Condition condition) {
+        return new NotCondition(condition);
+    }
+
+    /**
+     * Quotes a string for a description.
+     */
+
+    private static String quote(String string) {
+        return "\"" + string + "\"";
+    }
+
+    /**
+     * Joins the descriptions of conditions.
+     */
+
+    private static String describe(String name, Condition[] conditions) {
+        final StringBuilder description = new StringBuilder(name).append('(');
+        for (int i = 0; i < conditions.length; i++) {
+            if (i > 0) {
+                description.append(", ");
+            }
+            description.append(conditions[i]);
+        }
+        return description.append(')').toString();
+    }
+
+    private static final class TextCondition extends Condition {
+        private final String regex;
+        private final int minimumNumberOfMatches;
+
+        TextCondition(String regex, int minimumNumberOfMatches) {
+            this.regex = regex;
+            this.minimumNumberOfMatches = minimumNumberOfMatches;
+        }
+
+        @Override
+        Condition evaluate(ConditionContext context) {
+            int matches = 0;
+            for (ViewNode node : context.getSnapshot().getNodes(TextView.class, true, true)) {
+                if (RobotiumUtils.matches(regex, node) && ++matches == minimumNumberOfMatches) {
+                    return this;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return minimumNumberOfMatches > 1 ? "text(" + quote(regex) + ", " + minimumNumberOfMatches + ")" : "text(" + quote(regex) + ")";
+        }
+    }
+
+    private static final class ViewClassCondition extends Condition {
+        private final Class<? extends View> viewClass;
+
+        ViewClassCondition(Class<? extends View> viewClass) {
+            this.viewClass = viewClass;
+        }
+
+        @Override
+        Condition evaluate(ConditionContext context) {
+            return context.getSnapshot().hasViews(viewClass, true, true) ? this : null;
+        }
+
+        @Override
+        public String toString() {
+            return "view(" + viewClass.getSimpleName() + ")";
+        }
+    }
+
+    private static final class IdCondition extends Condition {
+        private final int id;
+
+        IdCondition(int id) {
+            this.id = id;
+        }
+
+        @Override
+        Condition evaluate(ConditionContext context) {
+            return context.getSnapshot().getView(id) != null ? this : null;
+        }
+
+        @Override
+        public String toString() {
+            return "id(0x" + Integer.toHexString(id) + ")";
+        }
+    }
+
+    private static final class ActivityCondition extends Condition {
+        private final String name;
+
+        ActivityCondition(String name) {
+            this.name = name;
+        }
+
+        @Override
+        Condition evaluate(ConditionContext context) {
+            return context.getActivity().getClass().getSimpleName().equals(name) ? this : null;
+        }
+
+        @Override
+        public String toString() {
+            return "activity(" + quote(name) + ")";
+        }
+    }
+
+    private static final class DialogCondition extends Condition {
+
+        @Override
+        Condition evaluate(ConditionContext context) {
+            return context.getWindowCount() > 1 ? this : null;
+        }
+
+        @Override
+        public String toString() {
+            return "dialog()";
+        }
+    }
+
+    private static final class AnyCondition extends Condition {
+        private final Condition[] conditions;
+
+        AnyCondition(Condition[] conditions) {
+            this.conditions = conditions;
+        }
+
+        @Override
+        Condition evaluate(ConditionContext context) {
+            for (Condition condition : conditions) {
+                final Condition satisfied = condition.evaluate(context);
+                if (satisfied != null) {
+                    return satisfied;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return describe("any", conditions);
+        }
+    }
+
+    private static final class AllCondition extends Condition {
+        private final Condition[] conditions;
+
+        AllCondition(Condition[] conditions) {
+            this.conditions = conditions;
+        }
+
+        @Override
+        Condition evaluate(ConditionContext context) {
+            for (Condition condition : conditions) {
+                if (condition.evaluate(context) == null) {
+                    return null;
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return describe("all", conditions);
+        }
+    }
+
+    private static final class NotCondition extends Condition {
+        private final Condition condition;
+
+        NotCondition(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        Condition evaluate(ConditionContext context) {
+            return condition.evaluate(context) == null ? this : null;
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + condition + ")";
+        }
+    }
+}
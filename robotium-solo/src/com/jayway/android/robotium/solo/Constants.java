@@ -6,7 +6,6 @@ package com.jayway.android.robotium.solo;
  * 
  */
 public final class Constants {
-    public final static int SPIN_WAIT = 500;
     public final static int LOCATION_ABOVE = 0;
     public final static int LOCATION_BELOW = 1;
     public static boolean SCREENSHOT_ASSERTS = false;
@@ -0,0 +1,148 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The time budget of one Solo operation, shared by the waits, searches and scrolls it is made of. Nested steps take their timeouts from the remaining
+ * budget instead of starting a fresh timeout each, so the operation as a whole ends when its budget is spent. The budget is measured on a
+ * {@link Clock}, which is monotonic for real time.
+ *
+ * Steps record the time they spent, so a timeout can be reported with how the budget was used.
+ *
+ */
+
+final class Deadline {
+
+    private final Clock clock;
+    private final long timeout;
+    private final long start;
+    private final Map<String, long[]> spending = new LinkedHashMap<String, long[]>();
+
+    /**
+     * Starts a budget.
+     *
+     * @param clock
+     *            the {@code Clock} to measure the budget on
+     * @param timeout
+     *            the budget in milliseconds, {@link Long#MAX_VALUE} for no limit
+     */
+
+    public Deadline(Clock clock, long timeout) {
+        this.clock = clock;
+        this.timeout = timeout;
+        this.start = clock.uptimeMillis();
+    }
+
+    /**
+     * Returns a budget without limit, for steps that are not part of a bounded operation.
+     *
+     * @param clock
+     *            the {@code Clock} to measure the time spent on
+     * @return a new unbounded budget
+     */
+
+    public static Deadline unbounded(Clock clock) {
+        return new Deadline(clock, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the time elapsed since the budget started.
+     *
+     * @return the elapsed time in milliseconds
+     */
+
+    public long getElapsed() {
+        return clock.uptimeMillis() - start;
+    }
+
+    /**
+     * Returns the remaining budget.
+     *
+     * @return the remaining time in milliseconds, never negative
+     */
+
+    public long getRemaining() {
+        return Math.max(timeout - getElapsed(), 0);
+    }
+
+    /**
+     * Checks if the budget is spent.
+     *
+     * @return {@code true} if no time remains
+     */
+
+    public boolean isExpired() {
+        return getRemaining() == 0;
+    }
+
+    /**
+     * Returns the remaining budget capped at a step timeout.
+     *
+     * @param stepTimeout
+     *            the timeout of the step in milliseconds
+     * @return the smaller of {@code stepTimeout} and the remaining budget
+     */
+
+    public long cap(long stepTimeout) {
+        return Math.min(stepTimeout, getRemaining());
+    }
+
+    /**
+     * Returns the end of the budget, for waits that take an end time.
+     *
+     * @return the end time, as returned by {@link Clock#uptimeMillis()}
+     */
+
+    public long getEndTime() {
+        return timeout > Long.MAX_VALUE - start ? Long.MAX_VALUE : start + timeout;
+    }
+
+    /**
+     * Starts timing a step.
+     *
+     * @return the start of the step, to pass to {@link #spend(String, long)}
+     */
+
+    public long begin() {
+        return clock.uptimeMillis();
+    }
+
+    /**
+     * Records the time spent by a step. Steps with the same name are summed up.
+     *
+     * @param step
+     *            the name of the step, e.g. {@code "scroll"}
+     * @param begin
+     *            the start of the step, as returned by {@link #begin()}
+     */
+
+    public synchronized void spend(String step, long begin) {
+        long[] spent = spending.get(step);
+        if (spent == null) {
+            spent = new long[2];
+            spending.put(step, spent);
+        }
+        spent[0] += clock.uptimeMillis() - begin;
+        spent[1]++;
+    }
+
+    /**
+     * Describes how the budget was spent, e.g. {@code "10012 of 10000 ms spent: waitForText 9410 ms (1x), scroll 602 ms (4x)"}.
+     *
+     * @return the description
+     */
+
+    public synchronized String describe() {
+        final StringBuilder description = new StringBuilder();
+        description.append(getElapsed()).append(" of ");
+        description.append(timeout == Long.MAX_VALUE ? "unlimited" : Long.toString(timeout)).append(" ms spent");
+        String separator = ": ";
+        for (Map.Entry<String, long[]> entry : spending.entrySet()) {
+            description.append(separator).append(entry.getKey()).append(' ').append(entry.getValue()[0]).append(" ms (")
+                    .append(entry.getValue()[1]).append("x)");
+            separator = ", ";
+        }
+        return description.toString();
+    }
+}
@@ -12,6 +12,7 @@ class DialogUtils {
 	
 	private final ViewFetcher viewFetcher;
     private final Sleeper sleeper;
+    private volatile PollingPolicy pollingPolicy = new PollingPolicy();
 
 	/**
 	 * Constructs this object.
@@ -27,6 +28,17 @@ class DialogUtils {
     }
 
 
+	/**
+	 * Sets the policy that paces the checks of {@link #waitForDialogToClose(long)}.
+	 *
+	 * @param pollingPolicy the {@code PollingPolicy} to use
+	 */
+
+	public void setPollingPolicy(PollingPolicy pollingPolicy) {
+		this.pollingPolicy = pollingPolicy;
+	}
+
+
 	/**
 	 * Waits for a {@link android.app.Dialog} to close.
 	 *
@@ -36,23 +48,29 @@ class DialogUtils {
 
 	public boolean waitForDialogToClose(long timeout) {
 		sleeper.sleepMini();
-		int elementsBefore = viewFetcher.getWindowDecorViews().length;
-		long now = System.currentTimeMillis();
-		final long endTime = now + timeout;
+		int elementsBefore = viewFetcher.getWindowCount();
+		final Clock clock = sleeper.getClock();
+		long now = clock.uptimeMillis();
+		final long endTime = clock.getEndTime(timeout);
 		int elementsNow;
-		while (now < endTime) {
-			elementsNow = viewFetcher.getWindowDecorViews().length;
-			if(elementsBefore < elementsNow){
-				elementsBefore = elementsNow;
-			}
-			if(elementsBefore > elementsNow)
-				break;
+		final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+		try {
+			while (now < endTime) {
+				elementsNow = viewFetcher.getWindowCount();
+				if(elementsBefore < elementsNow){
+					elementsBefore = elementsNow;
+				}
+				if(elementsBefore > elementsNow)
+					break;
 
-			sleeper.sleepMini();
-			now = System.currentTimeMillis();
+				poll.sleep(endTime);
+				now = clock.uptimeMillis();
+			}
+		} finally {
+			poll.finish();
 		}
 
-		if (now > endTime)
+		if (now >= endTime)
 			return false;
 
 		return true;
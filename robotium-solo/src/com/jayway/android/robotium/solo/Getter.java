@@ -20,7 +20,6 @@ class Getter {
     private final ActivityUtils activityUtils;
     private final ViewFetcher viewFetcher;
     private final Waiter waiter;
-    private final int TIMEOUT = 10000;
 
     /**
      * Constructs this object.
@@ -126,31 +125,29 @@ class Getter {
      */
 
     public <T extends TextView> T getView(Class<T> classToFilterBy, String text, boolean onlyVisible, boolean useRegex, int match, String searchAfter) {
-        waiter.waitForText(text, 0, TIMEOUT, false, onlyVisible);
-        ArrayList<T> views = viewFetcher.getCurrentViews(classToFilterBy);
+        waiter.waitForText(text, 0, viewFetcher.getTimingProfile().getSmallTimeout(), false, onlyVisible);
+        final ArrayList<ViewNode> nodes = viewFetcher.getSnapshot().getNodes(classToFilterBy, true, onlyVisible);
         final HashSet<TextView> uniqueTextViews = new HashSet<TextView>();
         boolean found = false;
         final boolean search = searchAfter != null;
         if (match < 1) {
             throw new IllegalStateException("Wtf are you trying to find with less than 1 matches?");
         }
-        if (onlyVisible)
-            views = RobotiumUtils.removeInvisibleViews(views);
         T viewToReturn = null;
-        for (T view : views) {
+        for (ViewNode node : nodes) {
             if (!search || found) {
-                if (useRegex && RobotiumUtils.checkAndGetMatches(text, view, uniqueTextViews) == match) {
-                    viewToReturn = view;
+                if (useRegex && RobotiumUtils.checkAndGetMatches(text, node, uniqueTextViews) == match) {
+                    viewToReturn = classToFilterBy.cast(node.getView());
                     break;
-                } else if (view.getText().toString().equals(text)) {
-                    viewToReturn = view;
+                } else if (node.getText().equals(text)) {
+                    viewToReturn = classToFilterBy.cast(node.getView());
                     break;
                 }
             } else if (search) {
-                if (useRegex && RobotiumUtils.checkAndGetMatches(searchAfter, view, uniqueTextViews) == 1) {
+                if (useRegex && RobotiumUtils.checkAndGetMatches(searchAfter, node, uniqueTextViews) == 1) {
                     uniqueTextViews.clear();
                     found = true;
-                } else if (view.getText().toString().equals(searchAfter)) {
+                } else if (node.getText().equals(searchAfter)) {
                     uniqueTextViews.clear();
                     found = true;
                 }
@@ -0,0 +1,108 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded, thread-safe LRU cache of classified and compiled search expressions, see {@link TextMatcher}. Text searches match the same expression
+ * against every inspected {@code TextView}, on every poll and every scrolled page, so the expression is classified and compiled once and reused instead
+ * of once per view.
+ *
+ */
+
+final class PatternCache {
+
+    private static final int MAX_SIZE = 64;
+
+    private static final LinkedHashMap<String, TextMatcher> matchers = new LinkedHashMap<String, TextMatcher>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TextMatcher> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+    private static long hits;
+    private static long misses;
+
+    private PatternCache() {
+    }
+
+    /**
+     * Returns the compiled form of a regular expression, compiling it only if it is not cached.
+     *
+     * @param regex
+     *            the regular expression
+     * @return the compiled {@code Pattern}
+     * @throws java.util.regex.PatternSyntaxException
+     *             if {@code regex} is not a valid regular expression
+     */
+
+    public static Pattern compile(String regex) {
+        return getMatcher(regex).getPattern();
+    }
+
+    /**
+     * Returns the {@code TextMatcher} of a search expression, classifying it only if it is not cached.
+     *
+     * @param regex
+     *            the search expression, interpreted as a regular expression
+     * @return the shared {@code TextMatcher}
+     * @throws java.util.regex.PatternSyntaxException
+     *             if {@code regex} is not a valid regular expression
+     */
+
+    public static TextMatcher getMatcher(String regex) {
+        synchronized (matchers) {
+            final TextMatcher cached = matchers.get(regex);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        // Classified outside of the lock, a concurrent miss for the same regex only classifies it twice
+        final TextMatcher matcher = new TextMatcher(regex);
+        synchronized (matchers) {
+            matchers.put(regex, matcher);
+        }
+        return matcher;
+    }
+
+    /**
+     * Returns the number of lookups that were served from the cache.
+     *
+     * @return the number of cache hits
+     */
+
+    public static long getHitCount() {
+        synchronized (matchers) {
+            return hits;
+        }
+    }
+
+    /**
+     * Returns the number of lookups that had to classify the search expression.
+     *
+     * @return the number of cache misses
+     */
+
+    public static long getMissCount() {
+        synchronized (matchers) {
+            return misses;
+        }
+    }
+
+    /**
+     * Removes all cached search expressions and resets the counters.
+     */
+
+    public static void clear() {
+        synchronized (matchers) {
+            matchers.clear();
+            hits = 0;
+            misses = 0;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.jayway.android.robotium.solo;
+
+/**
+ * Decides how long the wait methods of {@link Solo} pause between two checks of the condition they wait for. The condition is checked immediately, then
+ * after pauses that double from an initial delay up to a maximum delay, e.g. 16 ms, 32 ms, 64 ms, &hellip;, 500 ms. A screen that settles quickly is
+ * detected within a frame or two, while a long wait does not poll more often than every maximum delay. Subclasses can override
+ * {@link #getDelay(int)} for a different schedule.
+ *
+ * The policy also counts the waits it has paced and the number of checks they took.
+ *
+ */
+
+public class PollingPolicy {
+
+    /**
+     * The default delay before the second check, in milliseconds.
+     */
+
+    public static final int DEFAULT_INITIAL_DELAY = 16;
+
+    /**
+     * The default maximum delay between two checks, in milliseconds.
+     */
+
+    public static final int DEFAULT_MAX_DELAY = 500;
+
+    private final int initialDelay;
+    private final int maxDelay;
+    private long waitCount;
+    private long pollCount;
+    private int maxPollsPerWait;
+
+    /**
+     * Constructs a policy with the default delays.
+     */
+
+    public PollingPolicy() {
+        this(DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * Constructs a policy with exponential backoff.
+     *
+     * @param initialDelay
+     *            the delay before the second check, in milliseconds
+     * @param maxDelay
+     *            the maximum delay between two checks, in milliseconds
+     */
+
+    public PollingPolicy(int initialDelay, int maxDelay) {
+        if (initialDelay < 1 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("Invalid polling delays: " + initialDelay + ", " + maxDelay);
+        }
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Returns the delay after a check that did not satisfy the condition.
+     *
+     * @param poll
+     *            the number of checks made so far, {@code 1} after the first check
+     * @return the delay before the next check, in milliseconds
+     */
+
+    public int getDelay(int poll) {
+        long delay = initialDelay;
+        for (int i = 1; i < poll && delay < maxDelay; i++) {
+            delay *= 2;
+        }
+        return (int) Math.min(delay, maxDelay);
+    }
+
+    /**
+     * Returns the number of waits paced by this policy.
+     *
+     * @return the number of waits
+     */
+
+    public synchronized long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * Returns the number of checks made by all waits paced by this policy.
+     *
+     * @return the number of checks
+     */
+
+    public synchronized long getPollCount() {
+        return pollCount;
+    }
+
+    /**
+     * Returns the largest number of checks made by a single wait.
+     *
+     * @return the largest number of checks
+     */
+
+    public synchronized int getMaxPollsPerWait() {
+        return maxPollsPerWait;
+    }
+
+    /**
+     * Returns the average number of checks made per wait.
+     *
+     * @return the average number of checks, or {@code 0} if there have been no waits
+     */
+
+    public synchronized double getAveragePollsPerWait() {
+        return waitCount > 0 ? (double) pollCount / waitCount : 0;
+    }
+
+    /**
+     * Resets the statistics of this policy.
+     */
+
+    public synchronized void resetStatistics() {
+        waitCount = 0;
+        pollCount = 0;
+        maxPollsPerWait = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PollingPolicy[" + initialDelay + ".." + maxDelay + " ms, waits=" + waitCount + ", polls=" + pollCount + ", max=" + maxPollsPerWait + "]";
+    }
+
+    /**
+     * Starts pacing a wait. Every wait gets its own {@code Poll}, so concurrent waits do not share state.
+     *
+     * @param sleeper
+     *            the {@code Sleeper} with the {@code Clock} to pause on and the {@code WaitAccounting} to record the checks in
+     * @return the state of the new wait
+     */
+
+    Poll start(Sleeper sleeper) {
+        return new Poll(sleeper);
+    }
+
+    /**
+     * Adds a finished wait to the statistics.
+     *
+     * @param polls
+     *            the number of checks the wait made
+     */
+
+    private synchronized void record(int polls) {
+        waitCount++;
+        pollCount += polls;
+        if (polls > maxPollsPerWait) {
+            maxPollsPerWait = polls;
+        }
+    }
+
+    /**
+     * The state of one wait paced by a {@link PollingPolicy}.
+     *
+     */
+
+    final class Poll {
+
+        private final Sleeper sleeper;
+        private final Clock clock;
+        private final WaitAccounting waitAccounting;
+        private final boolean started;
+        private final boolean accounting;
+        private int polls = 1;
+        private boolean finished;
+
+        private Poll(Sleeper sleeper) {
+            this.sleeper = sleeper;
+            this.clock = sleeper.getClock();
+            this.waitAccounting = sleeper.getWaitAccounting();
+            this.started = sleeper.startWait(this);
+            this.accounting = waitAccounting.startWait();
+        }
+
+        /**
+         * Sleeps until the next check.
+         *
+         * @param endTime
+         *            the time, as returned by {@link Clock#uptimeMillis()}, after which the wait times out
+         */
+
+        void sleep(long endTime) {
+            waitAccounting.recordPoll();
+            final long begin = clock.uptimeMillis();
+            final long delay = Math.min(getDelay(polls++), endTime - begin);
+            if (delay > 0) {
+                clock.sleep(delay);
+                waitAccounting.recordWait(clock.uptimeMillis() - begin);
+            }
+        }
+
+        /**
+         * Waits until the UI changes or until the next check is due, whichever is first. The delay is the same as for {@link #sleep(long)}. A change
+         * brings the next check forward, but not closer to the previous one than the initial delay, so a change is seen within about a frame while a
+         * UI that changes every frame is not checked more than once per initial delay.
+         *
+         * @param uiChangeTracker
+         *            the {@code UiChangeTracker} instance
+         * @param generation
+         *            the generation of the UI that has been checked, see {@link UiChangeTracker#getGeneration()}
+         * @param endTime
+         *            the time, as returned by {@link Clock#uptimeMillis()}, after which the wait times out
+         */
+
+        void awaitChange(UiChangeTracker uiChangeTracker, int generation, long endTime) {
+            waitAccounting.recordPoll();
+            final long start = clock.uptimeMillis();
+            final long dueTime = Math.min(endTime, clock.getEndTime(getDelay(polls++)));
+            if (uiChangeTracker.awaitChange(generation, dueTime)) {
+                // Woken up by a change: keep the minimum spacing between two checks
+                final long recheckTime = Math.min(dueTime, start + getDelay(1));
+                final long begin = clock.uptimeMillis();
+                if (recheckTime > begin) {
+                    clock.sleep(recheckTime - begin);
+                    waitAccounting.recordWait(clock.uptimeMillis() - begin);
+                }
+            }
+        }
+
+        /**
+         * Ends the wait and adds it to the statistics of the policy. Only the first call has an effect.
+         */
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+                waitAccounting.endWait(accounting);
+                sleeper.endWait(started);
+                record(polls);
+            }
+        }
+    }
+}
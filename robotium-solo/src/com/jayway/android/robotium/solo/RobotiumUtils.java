@@ -2,8 +2,6 @@ package com.jayway.android.robotium.solo;
 
 import java.util.ArrayList;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import android.app.Instrumentation;
 import android.view.KeyEvent;
@@ -120,23 +118,62 @@ class RobotiumUtils {
      */
 
     public static int checkAndGetMatches(String regex, TextView view, Set<TextView> uniqueTextViews) {
-        final Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(view.getText().toString());
-        if (matcher.find()) {
+        final TextMatcher matcher = PatternCache.getMatcher(regex);
+        final String text = view.getText().toString();
+        if (matcher.find(text)) {
             uniqueTextViews.add(view);
         }
         if (view.getError() != null) {
-            matcher = pattern.matcher(view.getError().toString());
-            if (matcher.find()) {
+            if (matcher.find(view.getError().toString())) {
                 uniqueTextViews.add(view);
             }
         }
-        if (view.getText().toString().equals("") && view.getHint() != null) {
-            matcher = pattern.matcher(view.getHint().toString());
-            if (matcher.find()) {
+        if (text.equals("") && view.getHint() != null) {
+            if (matcher.find(view.getHint().toString())) {
                 uniqueTextViews.add(view);
             }
         }
         return uniqueTextViews.size();
     }
+
+    /**
+     * Checks if the record of a text view matches a certain string and returns the amount of matches. Reads the text, error and hint captured in the
+     * record instead of the live view.
+     * 
+     * @param regex
+     *            the regex to match
+     * @param node
+     *            the record of the text view to check
+     * @param uniqueTextViews
+     *            set of views that have matched
+     * @return amount of total matches
+     */
+
+    public static int checkAndGetMatches(String regex, ViewNode node, Set<TextView> uniqueTextViews) {
+        if (matches(regex, node)) {
+            uniqueTextViews.add((TextView) node.getView());
+        }
+        return uniqueTextViews.size();
+    }
+
+    /**
+     * Checks if the record of a text view matches a certain string, in its text, its error or, if the text is empty, its hint.
+     * 
+     * @param regex
+     *            the regex to match
+     * @param node
+     *            the record of the text view to check
+     * @return {@code true} if the text view matches
+     */
+
+    public static boolean matches(String regex, ViewNode node) {
+        final TextMatcher matcher = PatternCache.getMatcher(regex);
+        if (matcher.find(node.getText())) {
+            return true;
+        }
+        if (node.getError() != null && matcher.find(node.getError())) {
+            return true;
+        }
+        return node.getText().equals("") && node.getHint() != null && matcher.find(node.getHint());
+    }
 }
@@ -0,0 +1,63 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.HashSet;
+
+/**
+ * The views already evaluated by one scrolling search. The page shown after scrolling overlaps the previous page, and a list recycles the views of the
+ * rows that scrolled out for the rows that scrolled in, so neither the {@code View} nor its place on the screen tells what it shows. A view in a list row
+ * is therefore identified by the list, the adapter position of the row and its offset within the row, see {@link ViewNode#getAdapterPosition()}; any
+ * other view by itself. Only views that have not been seen before need to be evaluated, and each of them is counted once.
+ *
+ */
+
+final class ScannedViews {
+
+    private final HashSet<Object> keys = new HashSet<Object>();
+
+    /**
+     * Marks a view as evaluated.
+     *
+     * @param node
+     *            the record of the view
+     * @return {@code true} if the view is newly exposed, and {@code false} if it has been marked before
+     */
+
+    public boolean add(ViewNode node) {
+        final int position = node.getAdapterPosition();
+        if (position < 0) {
+            return keys.add(node.getView());
+        }
+        return keys.add(new RowKey(node.getAdapterView(), position, node.getOffsetInRow()));
+    }
+
+    /**
+     * Identifies a view in a list row independently of the recycled {@code View} that currently shows the row.
+     *
+     */
+
+    private static final class RowKey {
+        private final Object list;
+        private final int position;
+        private final int offset;
+
+        RowKey(Object list, int position, int offset) {
+            this.list = list;
+            this.position = position;
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof RowKey)) {
+                return false;
+            }
+            final RowKey key = (RowKey) other;
+            return list == key.list && position == key.position && offset == key.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(list) * 31 + position) * 31 + offset;
+        }
+    }
+}
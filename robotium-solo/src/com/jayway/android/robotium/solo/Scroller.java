@@ -7,7 +7,6 @@ import android.app.Instrumentation;
 import android.os.SystemClock;
 import android.util.Pair;
 import android.view.MotionEvent;
-import android.view.View;
 import android.widget.AbsListView;
 import android.widget.GridView;
 import android.widget.ListView;
@@ -37,6 +36,8 @@ class Scroller {
     private final ActivityUtils activityUtils;
     private final ViewFetcher viewFetcher;
     private final Sleeper sleeper;
+    private final Clock clock;
+    private final TimingProfile timingProfile;
 
     /**
      * Constructs this object.
@@ -56,6 +57,8 @@ class Scroller {
         this.activityUtils = activityUtils;
         this.viewFetcher = viewFetcher;
         this.sleeper = sleeper;
+        this.clock = sleeper.getClock();
+        this.timingProfile = sleeper.getTimingProfile();
     }
 
     /**
@@ -132,12 +135,13 @@ class Scroller {
      * 
      * @param direction
      *            the direction to be scrolled
+     * @param scroll
+     *            the {@code ScrollView} to scroll, or {@code null}
      * @return {@code true} if more scrolling can be done
      * 
      */
 
-    private boolean scrollScrollView(int direction, ArrayList<ScrollView> scrollViews) {
-        final ScrollView scroll = viewFetcher.getView(ScrollView.class, scrollViews);
+    private boolean scrollScrollView(int direction, ScrollView scroll) {
         int scrollAmount = 0;
 
         if (scroll != null) {
@@ -190,23 +194,34 @@ class Scroller {
      */
 
     public boolean scroll(int direction) {
-        final ArrayList<View> viewList = RobotiumUtils.removeInvisibleViews(viewFetcher.getViews(null, true));
-        final ArrayList<ListView> listViews = RobotiumUtils.filterViews(ListView.class, viewList);
+        return scroll(direction, Deadline.unbounded(clock));
+    }
 
-        if (listViews.size() > 0) {
-            return scrollList(ListView.class, null, direction, listViews);
-        }
+    /**
+     * Scrolls up and down as a step of an operation with a time budget. Waiting for the scrolled list to settle takes no longer than the remaining
+     * budget.
+     * 
+     * @param direction
+     *            the direction in which to scroll
+     * @param deadline
+     *            the budget of the operation that scrolls
+     * @return {@code true} if more scrolling can be done
+     * 
+     */
 
-        final ArrayList<GridView> gridViews = RobotiumUtils.filterViews(GridView.class, viewList);
+    public boolean scroll(int direction, Deadline deadline) {
+        final ViewSnapshot snapshot = viewFetcher.getSnapshot();
 
-        if (gridViews.size() > 0) {
-            return scrollList(GridView.class, null, direction, gridViews);
+        if (snapshot.hasViews(ListView.class, true, true)) {
+            return scrollList(ListView.class, snapshot.getMostRecentlyDrawnView(ListView.class, true, true), direction, null, deadline);
         }
 
-        final ArrayList<ScrollView> scrollViews = RobotiumUtils.filterViews(ScrollView.class, viewList);
+        if (snapshot.hasViews(GridView.class, true, true)) {
+            return scrollList(GridView.class, snapshot.getMostRecentlyDrawnView(GridView.class, true, true), direction, null, deadline);
+        }
 
-        if (scrollViews.size() > 0) {
-            return scrollScrollView(direction, scrollViews);
+        if (snapshot.hasViews(ScrollView.class, true, true)) {
+            return scrollScrollView(direction, snapshot.getMostRecentlyDrawnView(ScrollView.class, true, true));
         }
         return false;
     }
@@ -216,7 +231,7 @@ class Scroller {
      */
     public void scrollToTop() {
         while (scroll(UP)) {
-            sleeper.sleep(Constants.SPIN_WAIT);
+            sleeper.pause(timingProfile.getSpinWait());
         }
     }
 
@@ -225,7 +240,7 @@ class Scroller {
      */
     public void scrollToBottom() {
         while (scroll(DOWN)) {
-            sleeper.sleep(Constants.SPIN_WAIT);
+            sleeper.pause(timingProfile.getSpinWait());
         }
     }
 
@@ -241,6 +256,24 @@ class Scroller {
      */
 
     public <T extends AbsListView> boolean scrollList(Class<T> classToFilterBy, T absListView, int direction, ArrayList<T> listViews) {
+        return scrollList(classToFilterBy, absListView, direction, listViews, Deadline.unbounded(clock));
+    }
+
+    /**
+     * Scrolls a list as a step of an operation with a time budget.
+     * 
+     * @param listIndex
+     *            the list to be scrolled
+     * @param direction
+     *            the direction to be scrolled
+     * @param deadline
+     *            the budget of the operation that scrolls
+     * @return {@code true} if more scrolling can be done
+     * 
+     */
+
+    private <T extends AbsListView> boolean scrollList(Class<T> classToFilterBy, T absListView, int direction, ArrayList<T> listViews,
+            Deadline deadline) {
 
         if (absListView == null)
             absListView = (T) viewFetcher.getView(classToFilterBy, listViews);
@@ -277,7 +310,7 @@ class Scroller {
 
             scrollListToLine(absListView, lineToScrollTo);
         }
-        sleeper.sleep();
+        sleeper.pause(deadline);
         return true;
     }
 
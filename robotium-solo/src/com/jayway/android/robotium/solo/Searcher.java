@@ -3,11 +3,13 @@ package com.jayway.android.robotium.solo;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
 import android.util.Log;
 import android.view.View;
+import android.view.ViewParent;
 import android.widget.TextView;
 
 /**
@@ -23,10 +25,11 @@ class Searcher {
     private final ViewFetcher viewFetcher;
     private final Scroller scroller;
     private final Sleeper sleeper;
-    private final int TIMEOUT = 5000;
+    private final Clock clock;
+    private final TimingProfile timingProfile;
+    private final AdapterSearcher adapterSearcher;
+    private volatile PollingPolicy pollingPolicy = new PollingPolicy();
     private final String LOG_TAG = "Robotium";
-    Set<TextView> uniqueTextViews;
-    private int numberOfUniqueViews;
 
     /**
      * Constructs this object.
@@ -37,13 +40,43 @@ class Searcher {
      *            the {@code Scroller} instance
      * @param sleeper
      *            the {@code Sleeper} instance.
+     * @param adapterSearcher
+     *            the {@code AdapterSearcher} instance.
      */
 
-    public Searcher(ViewFetcher viewFetcher, Scroller scroller, Sleeper sleeper) {
+    public Searcher(ViewFetcher viewFetcher, Scroller scroller, Sleeper sleeper, AdapterSearcher adapterSearcher) {
         this.viewFetcher = viewFetcher;
         this.scroller = scroller;
         this.sleeper = sleeper;
-        uniqueTextViews = new HashSet<TextView>();
+        this.clock = sleeper.getClock();
+        this.timingProfile = sleeper.getTimingProfile();
+        this.adapterSearcher = adapterSearcher;
+    }
+
+    /**
+     * Constructs this object.
+     * 
+     * @param viewFetcher
+     *            the {@code ViewFetcher} instance.
+     * @param scroller
+     *            the {@code Scroller} instance
+     * @param sleeper
+     *            the {@code Sleeper} instance.
+     */
+
+    public Searcher(ViewFetcher viewFetcher, Scroller scroller, Sleeper sleeper) {
+        this(viewFetcher, scroller, sleeper, new AdapterSearcher(null, viewFetcher));
+    }
+
+    /**
+     * Sets the policy that paces the checks of the searches with a timeout.
+     * 
+     * @param pollingPolicy
+     *            the {@code PollingPolicy} to use
+     */
+
+    public void setPollingPolicy(PollingPolicy pollingPolicy) {
+        this.pollingPolicy = pollingPolicy;
     }
 
     /**
@@ -146,16 +179,94 @@ class Searcher {
 
     public boolean searchWithTimeoutFor(final Class<? extends TextView> viewClass, final String regex, final String after,
             final int expectedMinimumNumberOfMatches, final boolean scroll, final boolean onlyVisible, final int timeout) {
-        final long endTime = System.currentTimeMillis() + (timeout != -1 ? timeout : TIMEOUT);
+        final long endTime = clock.uptimeMillis() + (timeout != -1 ? timeout : timingProfile.getSearchTimeout());
+        final UiChangeTracker uiChangeTracker = viewFetcher.getUiChangeTracker();
+        final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+        try {
+            while (true) {
+                final int generation = uiChangeTracker.getGeneration();
+                final boolean foundAnyMatchingView = searchFor(viewClass, regex, expectedMinimumNumberOfMatches, scroll, onlyVisible);
+                if (foundAnyMatchingView) {
+                    return true;
+                }
+                if (clock.uptimeMillis() >= endTime) {
+                    return false;
+                }
+                poll.awaitChange(uiChangeTracker, generation, endTime);
+            }
+        } finally {
+            poll.finish();
+        }
+    }
 
-        while (System.currentTimeMillis() < endTime) {
-            sleeper.sleep();
-            final boolean foundAnyMatchingView = searchFor(viewClass, regex, expectedMinimumNumberOfMatches, scroll, onlyVisible);
-            if (foundAnyMatchingView) {
+    /**
+     * Searches for several texts at once. Each page is evaluated once for all texts, and the screen is scrolled down at most once; after that the current
+     * page is searched again, paced by the {@link PollingPolicy}, until all texts are found or the timeout expires.
+     * 
+     * @param queries
+     *            the texts to search for, mapped to the minimum number of matches expected for each. The texts <strong>will</strong> be interpreted as
+     *            regular expressions. {@code 0} matches means that one or more matches are expected to be found
+     * @param scroll
+     *            whether scrolling should be performed
+     * @param onlyVisible
+     *            {@code true} if only texts visible on the screen should be searched
+     * @param timeout
+     *            milliseconds to timeout the search, {@code -1} for the default timeout
+     * @return the texts, in their original order, mapped to {@code true} if they were found the expected number of times
+     * 
+     */
+
+    public Map<String, Boolean> searchWithTimeoutFor(Map<String, Integer> queries, boolean scroll, boolean onlyVisible, int timeout) {
+        final TextQueryBatch batch = new TextQueryBatch(queries);
+        final long endTime = clock.uptimeMillis() + (timeout != -1 ? timeout : timingProfile.getSearchTimeout());
+        final UiChangeTracker uiChangeTracker = viewFetcher.getUiChangeTracker();
+        final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+        boolean scrollPage = scroll;
+
+        try {
+            while (true) {
+                final int generation = uiChangeTracker.getGeneration();
+                if (searchFor(batch, scrollPage, onlyVisible) || clock.uptimeMillis() >= endTime) {
+                    break;
+                }
+                scrollPage = false;
+                batch.resetUnsatisfied();
+                poll.awaitChange(uiChangeTracker, generation, endTime);
+            }
+        } finally {
+            poll.finish();
+        }
+        return batch.getResults();
+    }
+
+    /**
+     * Evaluates a batch of text queries against the current page and, if scrolling, against the newly exposed views of every following page until all
+     * queries are satisfied.
+     * 
+     * @param batch
+     *            the queries to evaluate
+     * @param scroll
+     *            whether scrolling should be performed
+     * @param onlyVisible
+     *            {@code true} if only texts visible on the screen should be searched
+     * @return {@code true} if all queries are satisfied
+     * 
+     */
+
+    public boolean searchFor(TextQueryBatch batch, boolean scroll, boolean onlyVisible) {
+        final UiChangeTracker uiChangeTracker = viewFetcher.getUiChangeTracker();
+        final ScannedViews scannedViews = new ScannedViews();
+        while (true) {
+            if (batch.evaluate(viewFetcher.getSnapshot().getNodes(TextView.class, true, onlyVisible), scannedViews)) {
                 return true;
             }
+            final int generation = uiChangeTracker.getGeneration();
+            if (!scroll || !scroller.scroll(Scroller.DOWN)) {
+                Log.d(LOG_TAG, "Texts not found: " + batch.describeUnsatisfied());
+                return false;
+            }
+            uiChangeTracker.awaitChange(generation, clock.getEndTime(timingProfile.getSettleTimeout()));
         }
-        return false;
     }
 
     /**
@@ -183,7 +294,7 @@ class Searcher {
 
     /**
      * Searches for a {@code View} with the given regex string and returns {@code true} if the searched {@code View} is found a given number of times and
-     * appears after {@code String}
+     * appears after {@code String}. If adapter search is on, see {@link AdapterSearcher}, the shown list is searched through its adapter before scrolling.
      * 
      * @param viewClass
      *            what kind of {@code View} to search for, e.g. {@code Button.class} or {@code TextView.class}
@@ -203,18 +314,47 @@ class Searcher {
      */
     public <T extends TextView> boolean searchFor(final Class<T> viewClass, final String regex, final String after, final int expectedMinimumNumberOfMatches,
             final boolean scroll, final boolean onlyVisible) {
-        final Callable<Collection<T>> viewFetcherCallback = new Callable<Collection<T>>() {
-            public Collection<T> call() throws Exception {
-                sleeper.sleep();
-
-                if (onlyVisible)
-                    return RobotiumUtils.removeInvisibleViews(viewFetcher.getCurrentViews(viewClass));
+        return searchFor(viewClass, regex, after, expectedMinimumNumberOfMatches, scroll, onlyVisible, Deadline.unbounded(clock));
+    }
 
-                return viewFetcher.getCurrentViews(viewClass);
+    /**
+     * Searches for a {@code View} with the given regex string as a step of an operation with a time budget. Scrolling stops when the budget is spent.
+     * 
+     * @param viewClass
+     *            what kind of {@code View} to search for, e.g. {@code Button.class} or {@code TextView.class}
+     * @param regex
+     *            the text to search for. The parameter <strong>will</strong> be interpreted as a regular expression.
+     * @param after
+     *            the text to start the search at. {@code null} to search from beginning
+     * @param expectedMinimumNumberOfMatches
+     *            the minimum number of matches expected to be found. {@code 0} matches means that one or more matches are expected to be found.
+     * @param scroll
+     *            whether scrolling should be performed
+     * @param onlyVisible
+     *            {@code true} if only texts visible on the screen should be searched
+     * @param deadline
+     *            the budget of the operation that searches
+     * 
+     * @return {@code true} if a view of the specified class with the given text is found a given number of times. {@code false} if it is not found.
+     * 
+     */
+    public <T extends TextView> boolean searchFor(final Class<T> viewClass, final String regex, final String after, final int expectedMinimumNumberOfMatches,
+            final boolean scroll, final boolean onlyVisible, Deadline deadline) {
+        if (scroll && after == null && adapterSearcher.isEnabled()) {
+            final long begin = deadline.begin();
+            final boolean found = adapterSearcher.scrollToMatch(viewClass, regex, expectedMinimumNumberOfMatches) != null;
+            deadline.spend("adapterSearch", begin);
+            if (found) {
+                return true;
+            }
+        }
+        final Callable<Collection<ViewNode>> viewFetcherCallback = new Callable<Collection<ViewNode>>() {
+            public Collection<ViewNode> call() throws Exception {
+                return viewFetcher.getSnapshot().getNodes(viewClass, true, onlyVisible);
             }
         };
         try {
-            return searchFor(viewFetcherCallback, regex, expectedMinimumNumberOfMatches, scroll);
+            return searchFor(viewFetcherCallback, regex, null, expectedMinimumNumberOfMatches, scroll, deadline);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -234,7 +374,7 @@ class Searcher {
      */
 
     public <T extends View> boolean searchFor(Set<T> uniqueViews, Class<T> viewClass, final int index) {
-        ArrayList<T> allViews = RobotiumUtils.removeInvisibleViews(viewFetcher.getCurrentViews(viewClass));
+        ArrayList<T> allViews = viewFetcher.getCurrentShownViews(viewClass);
 
         int uniqueViewsFound = (getNumberOfUniqueViews(uniqueViews, allViews));
 
@@ -263,23 +403,34 @@ class Searcher {
     }
 
     /**
-     * Searches for a given view
+     * Searches for a given view. Only the ancestors of the view are descended into, and the search ends as soon as the view is found.
      * 
      * @param view
      *            the view to search
-     * @param scroll
-     *            true if scrolling should be performed
      * @return true if view is found
      */
 
-    public <T extends View> boolean searchFor(View view) {
-        ArrayList<View> views = viewFetcher.getAllViews(true);
-        for (View v : views) {
-            if (v.equals(view)) {
-                return true;
-            }
+    public <T extends View> boolean searchFor(final View view) {
+        if (view == null) {
+            return false;
         }
-        return false;
+        final Set<View> ancestors = new HashSet<View>();
+        ViewParent parent = view.getParent();
+        while (parent instanceof View) {
+            ancestors.add((View) parent);
+            parent = parent.getParent();
+        }
+        final boolean[] found = new boolean[1];
+        viewFetcher.visit(new ViewVisitor() {
+            public Result visit(View visitedView, boolean sufficientlyShown) {
+                if (visitedView == view) {
+                    found[0] = sufficientlyShown;
+                    return Result.STOP;
+                }
+                return ancestors.contains(visitedView) ? Result.CONTINUE : Result.SKIP_SUBTREE;
+            }
+        }, true);
+        return found[0];
     }
 
     /**
@@ -287,7 +438,7 @@ class Searcher {
      * scroll, because the caller needs to find new {@code View}s to evaluate after scrolling, and call this method again.
      * 
      * @param viewFetcherCallback
-     *            callback which should return an updated collection of views to search
+     *            callback which should return an updated collection of text view records to search
      * @param regex
      *            the text to search for. The parameter <strong>will</strong> be interpreted as a regular expression.
      * @param expectedMinimumNumberOfMatches
@@ -300,18 +451,18 @@ class Searcher {
      *             not really, it's just the signature of {@code Callable}
      */
 
-    public <T extends TextView> boolean searchFor(Callable<Collection<T>> viewFetcherCallback, String regex, int expectedMinimumNumberOfMatches, boolean scroll)
+    public boolean searchFor(Callable<Collection<ViewNode>> viewFetcherCallback, String regex, int expectedMinimumNumberOfMatches, boolean scroll)
             throws Exception {
         return searchFor(viewFetcherCallback, regex, null, expectedMinimumNumberOfMatches, scroll);
     }
 
     /**
      * Searches for a {@code View} with the given regex string and returns {@code true} if the searched {@code View} is found a given number of times and
-     * appears after {@code String}. Will not scroll, because the caller needs to find new {@code View}s to evaluate after scrolling, and call this method
-     * again.
+     * appears after {@code String}. When scrolling, only the views exposed by each scroll are evaluated, see {@link ScannedViews}, so rows shown on
+     * overlapping pages are matched and counted once.
      * 
      * @param viewFetcherCallback
-     *            callback which should return an updated collection of views to search
+     *            callback which should return an updated collection of text view records to search
      * @param regex
      *            the text to search for. The parameter <strong>will</strong> be interpreted as a regular expression.
      * @param after
@@ -325,36 +476,76 @@ class Searcher {
      * @throws Exception
      *             not really, it's just the signature of {@code Callable}
      */
-    public <T extends TextView> boolean searchFor(Callable<Collection<T>> viewFetcherCallback, String regex, String after, int expectedMinimumNumberOfMatches,
+    public boolean searchFor(Callable<Collection<ViewNode>> viewFetcherCallback, String regex, String after, int expectedMinimumNumberOfMatches,
             boolean scroll) throws Exception {
+        return searchFor(viewFetcherCallback, regex, after, expectedMinimumNumberOfMatches, scroll, Deadline.unbounded(clock));
+    }
+
+    /**
+     * Searches for a {@code View} with the given regex string as a step of an operation with a time budget. The time spent evaluating and scrolling is
+     * recorded in the budget, and no further page is scrolled to once it is spent.
+     * 
+     * @param viewFetcherCallback
+     *            callback which should return an updated collection of text view records to search
+     * @param regex
+     *            the text to search for. The parameter <strong>will</strong> be interpreted as a regular expression.
+     * @param after
+     *            the text to start the search at. {@code null} to search from beginning
+     * @param expectedMinimumNumberOfMatches
+     *            the minimum number of matches expected to be found. {@code 0} matches means that one or more matches are expected to be found.
+     * @param scroll
+     *            whether scrolling should be performed
+     * @param deadline
+     *            the budget of the operation that searches
+     * @return {@code true} if a view of the specified class with the given text is found a given number of times. {@code false} if it is not found.
+     * 
+     * @throws Exception
+     *             not really, it's just the signature of {@code Callable}
+     */
+    public boolean searchFor(Callable<Collection<ViewNode>> viewFetcherCallback, String regex, String after, int expectedMinimumNumberOfMatches,
+            boolean scroll, Deadline deadline) throws Exception {
         if (expectedMinimumNumberOfMatches < 1) {
             expectedMinimumNumberOfMatches = 1;
         }
         boolean found = false;
         final boolean search = after != null;
-        Collection<T> views;
+        final ScannedViews scannedViews = new ScannedViews();
+        int numberOfMatches = 0;
+        final UiChangeTracker uiChangeTracker = viewFetcher.getUiChangeTracker();
+        Collection<ViewNode> nodes;
         while (true) {
-            views = viewFetcherCallback.call();
-            for (TextView view : views) {
-                if (!search || found) {
-                    if (RobotiumUtils.checkAndGetMatches(regex, view, uniqueTextViews) == expectedMinimumNumberOfMatches) {
-                        uniqueTextViews.clear();
-                        return true;
+            long begin = deadline.begin();
+            nodes = viewFetcherCallback.call();
+            try {
+                for (ViewNode node : nodes) {
+                    if (!scannedViews.add(node)) {
+                        // Evaluated on a previous page
+                        continue;
                     }
-                } else if (search) {
-                    if (RobotiumUtils.checkAndGetMatches(after, view, uniqueTextViews) == 1) {
-                        uniqueTextViews.clear();
+                    if (!search || found) {
+                        if (RobotiumUtils.matches(regex, node) && ++numberOfMatches == expectedMinimumNumberOfMatches) {
+                            return true;
+                        }
+                    } else if (RobotiumUtils.matches(after, node)) {
                         found = true;
                     }
                 }
+            } finally {
+                deadline.spend("search", begin);
+            }
+            if (!scroll || deadline.isExpired()) {
+                return logMatchesFoundAndReturnFalse(regex, numberOfMatches);
             }
-            if (scroll && !scroller.scroll(Scroller.DOWN)) {
-                return logMatchesFoundAndReturnFalse(regex);
+            final int generation = uiChangeTracker.getGeneration();
+            begin = deadline.begin();
+            final boolean scrolled = scroller.scroll(Scroller.DOWN, deadline);
+            if (scrolled) {
+                uiChangeTracker.awaitChange(generation, Math.min(deadline.getEndTime(), clock.getEndTime(timingProfile.getSettleTimeout())));
             }
-            if (!scroll) {
-                return logMatchesFoundAndReturnFalse(regex);
+            deadline.spend("scroll", begin);
+            if (!scrolled) {
+                return logMatchesFoundAndReturnFalse(regex, numberOfMatches);
             }
-            sleeper.sleep();
         }
     }
 
@@ -374,19 +565,7 @@ class Searcher {
         for (int i = 0; i < views.size(); i++) {
             uniqueViews.add(views.get(i));
         }
-        numberOfUniqueViews = uniqueViews.size();
-        return numberOfUniqueViews;
-    }
-
-    /**
-     * Returns the number of unique views
-     * 
-     * @return the number of unique views
-     * 
-     */
-
-    public int getNumberOfUniqueViews() {
-        return numberOfUniqueViews;
+        return uniqueViews.size();
     }
 
     /**
@@ -394,14 +573,15 @@ class Searcher {
      * 
      * @param regex
      *            the search string to log
+     * @param numberOfMatches
+     *            the number of text views matched by the search
      * 
      */
 
-    private boolean logMatchesFoundAndReturnFalse(String regex) {
-        if (uniqueTextViews.size() > 0) {
-            Log.d(LOG_TAG, " There are only " + uniqueTextViews.size() + " matches of " + regex);
+    private boolean logMatchesFoundAndReturnFalse(String regex, int numberOfMatches) {
+        if (numberOfMatches > 0) {
+            Log.d(LOG_TAG, " There are only " + numberOfMatches + " matches of " + regex);
         }
-        uniqueTextViews.clear();
         return false;
     }
 
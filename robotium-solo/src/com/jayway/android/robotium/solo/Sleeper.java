@@ -2,8 +2,135 @@ package com.jayway.android.robotium.solo;
 
 class Sleeper {
 
-	private final int PAUSE = 500;
-	private final int MINIPAUSE = 300;
+	private final Clock clock;
+	private final TimingProfile timingProfile;
+	private final WaitAccounting waitAccounting = new WaitAccounting();
+	private final ThreadLocal<Object> currentWait = new ThreadLocal<Object>();
+	private volatile UiIdleWaiter uiIdleWaiter;
+
+	/**
+	 * Constructs this object.
+	 *
+	 * @param clock the {@code Clock} to sleep on
+	 * @param timingProfile the {@code TimingProfile} with the pause lengths
+	 *
+	 */
+
+	public Sleeper(Clock clock, TimingProfile timingProfile) {
+		this.clock = clock;
+		this.timingProfile = timingProfile;
+	}
+
+	/**
+	 * Constructs this object with the compat pause lengths.
+	 *
+	 * @param clock the {@code Clock} to sleep on
+	 *
+	 */
+
+	public Sleeper(Clock clock) {
+		this(clock, TimingProfile.COMPAT);
+	}
+
+	/**
+	 * Constructs this object, sleeping in real time.
+	 *
+	 */
+
+	public Sleeper() {
+		this(Clock.SYSTEM);
+	}
+
+
+	/**
+	 * Returns the clock that this object sleeps on and that all timeouts are measured with.
+	 *
+	 * @return the {@code Clock} instance
+	 *
+	 */
+
+	public Clock getClock() {
+		return clock;
+	}
+
+
+	/**
+	 * Returns the profile with the pause lengths and timeouts.
+	 *
+	 * @return the {@code TimingProfile} instance
+	 *
+	 */
+
+	public TimingProfile getTimingProfile() {
+		return timingProfile;
+	}
+
+
+	/**
+	 * Returns the accounting of the time slept and waited.
+	 *
+	 * @return the {@code WaitAccounting} instance
+	 *
+	 */
+
+	public WaitAccounting getWaitAccounting() {
+		return waitAccounting;
+	}
+
+
+	/**
+	 * Sets the waiter that ends the default pauses early when the timing profile is idle synced, see {@link TimingProfile#isIdleSync()}.
+	 *
+	 * @param uiIdleWaiter the {@code UiIdleWaiter} instance
+	 *
+	 */
+
+	public void setUiIdleWaiter(UiIdleWaiter uiIdleWaiter) {
+		this.uiIdleWaiter = uiIdleWaiter;
+	}
+
+	/**
+	 * Marks the start of a polling wait of the calling thread. Nested waits belong to the outermost one.
+	 *
+	 * @param wait the object identifying the wait
+	 * @return {@code true} if this call started the outermost wait and has to end it
+	 *
+	 */
+
+	boolean startWait(Object wait) {
+		if (currentWait.get() != null) {
+			return false;
+		}
+		currentWait.set(wait);
+		return true;
+	}
+
+
+	/**
+	 * Marks the end of a polling wait of the calling thread.
+	 *
+	 * @param started the value returned by {@link #startWait(Object)}
+	 *
+	 */
+
+	void endWait(boolean started) {
+		if (started) {
+			currentWait.remove();
+		}
+	}
+
+
+	/**
+	 * Returns the polling wait the calling thread is in.
+	 *
+	 * @return the object identifying the outermost wait, or {@code null} if the thread is not waiting
+	 *
+	 */
+
+	Object getCurrentWait() {
+		return currentWait.get();
+	}
+
 
 	/**
 	 * Sleeps the current thread for a default pause length.
@@ -11,7 +138,7 @@ class Sleeper {
 	 */
 
 	public void sleep() {
-        sleep(PAUSE);
+		pause(timingProfile.getPause());
 	}
 
 
@@ -21,7 +148,53 @@ class Sleeper {
 	 */
 
 	public void sleepMini() {
-        sleep(MINIPAUSE);
+		pause(timingProfile.getMiniPause());
+	}
+
+
+	/**
+	 * Sleeps the current thread for a default minimal pause length, e.g. before retrying an event.
+	 *
+	 */
+
+	public void sleepMinimal() {
+		sleep(timingProfile.getMiniSleep());
+	}
+
+
+	/**
+	 * Pauses for the default pause length or the remaining budget of an operation, whichever is shorter. The pause ends when the UI is idle if the timing
+	 * profile is idle synced.
+	 *
+	 * @param deadline the budget of the operation that pauses
+	 *
+	 */
+
+	public void pause(Deadline deadline) {
+		final long begin = deadline.begin();
+		try {
+			pause((int) deadline.cap(timingProfile.getPause()));
+		} finally {
+			deadline.spend("pause", begin);
+		}
+	}
+
+
+	/**
+	 * Pauses for <code>time</code> milliseconds, or until the UI is idle if the timing profile is idle synced. Use it after an action in place of a fixed
+	 * sleep, so that {@link TimingProfile#COMPAT} keeps the fixed sleep.
+	 *
+	 * @param time the length of the pause in milliseconds
+	 *
+	 */
+
+	public void pause(int time) {
+		final UiIdleWaiter waiter = uiIdleWaiter;
+		if (timingProfile.isIdleSync() && waiter != null && waiter.canWait()) {
+			waiter.waitForUiIdle(time);
+		} else {
+			sleep(time);
+		}
 	}
 
 
@@ -33,9 +206,9 @@ class Sleeper {
 	 */
 
 	public void sleep(int time) {
-		try {
-			Thread.sleep(time);
-		} catch (InterruptedException ignored) {}
+		final long begin = clock.uptimeMillis();
+		clock.sleep(time);
+		waitAccounting.recordSleep(clock.uptimeMillis() - begin);
 	}
 
 }
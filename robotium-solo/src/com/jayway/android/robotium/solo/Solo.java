@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import android.app.Activity;
 import android.app.Instrumentation;
@@ -79,6 +80,7 @@ public class Solo {
     private final Clicker clicker;
     private final Presser presser;
     private final Searcher searcher;
+    private final AdapterSearcher adapterSearcher;
     private final ActivityUtils activityUtils;
     private final DialogUtils dialogUtils;
     private final TextEnterer textEnterer;
@@ -90,8 +92,6 @@ public class Solo {
     private final Getter getter;
     private final ExtensionUtils extUtils;
     private final WebViewUtils mWebViewUtils;
-    private final static int TIMEOUT = 20000;
-    private final static int SMALLTIMEOUT = 10000;
     private final static String LOG_TAG = "Robotium";
     public final static int LANDSCAPE = ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE; // 0
     public final static int PORTRAIT = ActivityInfo.SCREEN_ORIENTATION_PORTRAIT; // 1
@@ -108,7 +108,52 @@ public class Solo {
     public final static int LOCATION_BELOW = Constants.LOCATION_BELOW;
 
     public Solo(Instrumentation instrumentation, Activity activity, final BaseExtensionUtils extensionUtils) {
-        this.sleeper = new Sleeper();
+        this(instrumentation, activity, extensionUtils, Clock.SYSTEM);
+    }
+
+    /**
+     * Constructor that takes in the instrumentation, the start activity, the extension utils and the clock that all pauses and timeouts run on.
+     * 
+     * @param instrumentation
+     *            the {@link Instrumentation} instance
+     * @param activity
+     *            the start {@link Activity} or {@code null} if no start activity is provided
+     * @param extensionUtils
+     *            the {@link BaseExtensionUtils} that take screenshots, or {@code null} for the default
+     * @param clock
+     *            the {@link Clock} to use, e.g. a {@link VirtualClock} to run timeouts without waiting
+     * 
+     */
+
+    public Solo(Instrumentation instrumentation, Activity activity, final BaseExtensionUtils extensionUtils, Clock clock) {
+        this(instrumentation, activity, extensionUtils, clock, TimingProfile.COMPAT);
+    }
+
+    /**
+     * Constructor that takes in the instrumentation, the start activity, the extension utils, the clock that all pauses and timeouts run on and the
+     * profile with the default pause lengths and timeouts.
+     * 
+     * @param instrumentation
+     *            the {@link Instrumentation} instance
+     * @param activity
+     *            the start {@link Activity} or {@code null} if no start activity is provided
+     * @param extensionUtils
+     *            the {@link BaseExtensionUtils} that take screenshots, or {@code null} for the default
+     * @param clock
+     *            the {@link Clock} to use, e.g. a {@link VirtualClock} to run timeouts without waiting
+     * @param timingProfile
+     *            the {@link TimingProfile} to use, e.g. {@link TimingProfile#FAST}
+     * 
+     */
+
+    public Solo(Instrumentation instrumentation, Activity activity, final BaseExtensionUtils extensionUtils, Clock clock, TimingProfile timingProfile) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock must not be null");
+        }
+        if (timingProfile == null) {
+            throw new IllegalArgumentException("timingProfile must not be null");
+        }
+        this.sleeper = new Sleeper(clock, timingProfile);
         this.activityUtils = new ActivityUtils(instrumentation, activity, sleeper);
         if (extensionUtils != null) {
             this.extUtils = new ExtensionUtils(activity, instrumentation, activityUtils) {
@@ -121,21 +166,27 @@ public class Solo {
             this.extUtils = new ExtensionUtils(activity, instrumentation, activityUtils);
         }
         Assert.ExtensionUtils = this.extUtils;
-        this.viewFetcher = new ViewFetcher(activityUtils, sleeper);
+        this.viewFetcher = new ViewFetcher(instrumentation, activityUtils, sleeper);
         this.dialogUtils = new DialogUtils(viewFetcher, sleeper);
         this.scroller = new Scroller(instrumentation, activityUtils, viewFetcher, sleeper);
-        this.searcher = new Searcher(viewFetcher, scroller, sleeper);
+        this.adapterSearcher = new AdapterSearcher(instrumentation, viewFetcher);
+        this.searcher = new Searcher(viewFetcher, scroller, sleeper, adapterSearcher);
         this.waiter = new Waiter(activityUtils, viewFetcher, searcher, scroller, sleeper);
         this.setter = new Setter(activityUtils);
         this.getter = new Getter(activityUtils, viewFetcher, waiter);
         this.asserter = new Asserter(activityUtils, waiter);
-        this.checker = new Checker(viewFetcher, waiter);
+        this.checker = new Checker(viewFetcher, waiter, sleeper);
         this.robotiumUtils = new RobotiumUtils(instrumentation, sleeper);
         this.mWebViewUtils = new WebViewUtils(activityUtils);
-        this.clicker = new Clicker(viewFetcher, scroller, robotiumUtils, instrumentation, sleeper, waiter, searcher, mWebViewUtils);
+        this.clicker = new Clicker(viewFetcher, scroller, robotiumUtils, instrumentation, sleeper, waiter, searcher, mWebViewUtils, adapterSearcher);
         this.presser = new Presser(clicker, instrumentation, sleeper, waiter);
         this.textEnterer = new TextEnterer(instrumentation, clicker, mWebViewUtils, sleeper);
         this.viewFetcher.setScroller(this.scroller);
+        this.sleeper.setUiIdleWaiter(viewFetcher.getUiIdleWaiter());
+        final PollingPolicy pollingPolicy = new PollingPolicy(timingProfile.getInitialPollDelay(), timingProfile.getMaxPollDelay());
+        this.searcher.setPollingPolicy(pollingPolicy);
+        this.waiter.setPollingPolicy(pollingPolicy);
+        this.dialogUtils.setPollingPolicy(pollingPolicy);
     }
 
     public Solo(Instrumentation instrumentation, final BaseExtensionUtils extensionUtils) {
@@ -238,7 +289,7 @@ public class Solo {
     }
 
     /**
-     * Waits for a text to be shown. Default timeout is 20 seconds.
+     * Waits for a text to be shown. Default timeout is 20 seconds, see {@link TimingProfile#getTimeout()}.
      * 
      * @param text
      *            the text to wait for
@@ -308,7 +359,7 @@ public class Solo {
     }
 
     /**
-     * Waits for a View of a certain class to be shown. Default timeout is 20 seconds.
+     * Waits for a View of a certain class to be shown. Default timeout is 20 seconds, see {@link TimingProfile#getTimeout()}.
      * 
      * @param viewClass
      *            the {@link View} class to wait for
@@ -316,11 +367,11 @@ public class Solo {
 
     public <T extends View> boolean waitForView(final Class<T> viewClass) {
 
-        return waiter.waitForView(viewClass, 0, TIMEOUT, true);
+        return waiter.waitForView(viewClass, 0, sleeper.getTimingProfile().getTimeout(), true);
     }
 
     /**
-     * Waits for a View to be shown. Default timeout is 20 seconds.
+     * Waits for a View to be shown. Default timeout is 20 seconds, see {@link TimingProfile#getTimeout()}.
      * 
      * @param view
      *            the {@link View} object to wait for
@@ -600,6 +651,141 @@ public class Solo {
         return searcher.searchWithTimeoutFor(TextView.class, text, after, minimumNumberOfMatches, scroll, onlyVisible);
     }
 
+    /**
+     * Searches for several text strings at once. All texts are looked for in a single pass over each page, and the screen is scrolled at most once, which
+     * is cheaper than calling {@link #searchText(String, int)} for each text. Will automatically scroll when needed.
+     * 
+     * @param texts
+     *            the texts to search for, mapped to the minimum number of matches expected for each. The texts <strong>will</strong> be interpreted as
+     *            regular expressions. {@code 0} means that one or more matches are expected to be found
+     * @return the texts, in their original order, mapped to {@code true} if found the expected number of times and {@code false} if not
+     * 
+     */
+
+    public Map<String, Boolean> searchTexts(Map<String, Integer> texts) {
+        return searcher.searchWithTimeoutFor(texts, true, false, -1);
+    }
+
+    /**
+     * Searches for several text strings at once. All texts are looked for in a single pass over each page, and the screen is scrolled at most once, which
+     * is cheaper than calling {@link #searchText(String, int, boolean, boolean)} for each text.
+     * 
+     * @param texts
+     *            the texts to search for, mapped to the minimum number of matches expected for each. The texts <strong>will</strong> be interpreted as
+     *            regular expressions. {@code 0} means that one or more matches are expected to be found
+     * @param scroll
+     *            {@code true} if scrolling should be performed
+     * @param onlyVisible
+     *            {@code true} if only texts visible on the screen should be searched
+     * @param timeout
+     *            the amount of time in milliseconds to search
+     * @return the texts, in their original order, mapped to {@code true} if found the expected number of times and {@code false} if not
+     * 
+     */
+
+    public Map<String, Boolean> searchTexts(Map<String, Integer> texts, boolean scroll, boolean onlyVisible, int timeout) {
+        return searcher.searchWithTimeoutFor(texts, scroll, onlyVisible, timeout);
+    }
+
+    /**
+     * Waits for a condition to be satisfied, e.g. {@code waitFor(Conditions.any(Conditions.text("Done"), Conditions.dialog()))}. Default timeout is 20
+     * seconds.
+     * 
+     * @param condition
+     *            the condition to wait for, created with {@link Conditions}
+     * @return the condition that satisfied the wait, i.e. {@code condition} or for {@link Conditions#any(Condition...)} the satisfied branch, or
+     *         {@code null} if the condition is not satisfied before the timeout
+     * 
+     */
+
+    public Condition waitFor(Condition condition) {
+        return waitFor(condition, sleeper.getTimingProfile().getTimeout());
+    }
+
+    /**
+     * Waits for a condition to be satisfied. All leaf conditions are evaluated against one view snapshot per check.
+     * 
+     * @param condition
+     *            the condition to wait for, created with {@link Conditions}
+     * @param timeout
+     *            the amount of time in milliseconds to wait
+     * @return the condition that satisfied the wait, i.e. {@code condition} or for {@link Conditions#any(Condition...)} the satisfied branch, or
+     *         {@code null} if the condition is not satisfied before the timeout
+     * 
+     */
+
+    public Condition waitFor(Condition condition, int timeout) {
+        return waiter.waitFor(condition, timeout, false);
+    }
+
+    /**
+     * Sets the policy that paces the checks of the wait and search methods, e.g. {@link #waitForText(String)}, {@link #searchText(String)},
+     * {@link #waitForView(Class)} and {@link #waitForDialogToClose(long)}. The default policy checks immediately and then backs off exponentially from
+     * 16 ms to 500 ms.
+     * 
+     * @param pollingPolicy
+     *            the {@code PollingPolicy} to use
+     * 
+     */
+
+    public void setPollingPolicy(PollingPolicy pollingPolicy) {
+        if (pollingPolicy == null) {
+            throw new IllegalArgumentException("pollingPolicy must not be null");
+        }
+        searcher.setPollingPolicy(pollingPolicy);
+        waiter.setPollingPolicy(pollingPolicy);
+        dialogUtils.setPollingPolicy(pollingPolicy);
+    }
+
+    /**
+     * Returns the policy that paces the checks of the wait methods. Its statistics tell how many checks the waits took.
+     * 
+     * @return the {@code PollingPolicy} in use
+     * 
+     */
+
+    public PollingPolicy getPollingPolicy() {
+        return waiter.getPollingPolicy();
+    }
+
+    /**
+     * Returns the accounting of the time this {@code Solo} has slept and waited, and of the checks and view traversals made meanwhile, per {@code Solo}
+     * method. Use it for a per-test summary and a cumulative report of where the time goes. The accounting is off until turned on with
+     * {@link WaitAccounting#setEnabled(boolean)}.
+     * 
+     * @return the {@code WaitAccounting} of this {@code Solo}
+     * 
+     */
+
+    public WaitAccounting getWaitAccounting() {
+        return sleeper.getWaitAccounting();
+    }
+
+    /**
+     * Returns the profile with the default pause lengths and timeouts, as given to the constructor.
+     * 
+     * @return the {@code TimingProfile} in use
+     * 
+     */
+
+    public TimingProfile getTimingProfile() {
+        return sleeper.getTimingProfile();
+    }
+
+    /**
+     * Turns adapter search on or off. With adapter search on, text searches and {@code clickOnText} that may scroll read the rows of the shown list from
+     * its {@code Adapter} instead of scrolling through it page by page, and then jump to the matching row with a single scroll. Matches are then counted
+     * within the rows of the list only. Searches fall back to scrolling if the adapter has too few matches or cannot be read. Off by default.
+     * 
+     * @param enabled
+     *            {@code true} to search lists through their adapters
+     * 
+     */
+
+    public void setAdapterSearch(boolean enabled) {
+        adapterSearcher.setEnabled(enabled);
+    }
+
     /**
      * Sets the Orientation (Landscape/Portrait) for the current activity.
      * 
@@ -909,7 +1095,7 @@ public class Solo {
      */
 
     public void clickOnView(View view) {
-        waiter.waitForView(view, SMALLTIMEOUT);
+        waiter.waitForView(view, sleeper.getTimingProfile().getSmallTimeout());
         clicker.clickOnScreen(view);
     }
 
@@ -1327,7 +1513,7 @@ public class Solo {
      */
 
     public void setDatePicker(DatePicker datePicker, int year, int monthOfYear, int dayOfMonth) {
-        waiter.waitForView(datePicker, SMALLTIMEOUT);
+        waiter.waitForView(datePicker, sleeper.getTimingProfile().getSmallTimeout());
         setter.setDatePicker(datePicker, year, monthOfYear, dayOfMonth);
     }
 
@@ -1360,7 +1546,7 @@ public class Solo {
      */
 
     public void setTimePicker(TimePicker timePicker, int hour, int minute) {
-        waiter.waitForView(timePicker, SMALLTIMEOUT);
+        waiter.waitForView(timePicker, sleeper.getTimingProfile().getSmallTimeout());
         setter.setTimePicker(timePicker, hour, minute);
     }
 
@@ -1389,7 +1575,7 @@ public class Solo {
      */
 
     public void setProgressBar(ProgressBar progressBar, int progress) {
-        waiter.waitForView(progressBar, SMALLTIMEOUT);
+        waiter.waitForView(progressBar, sleeper.getTimingProfile().getSmallTimeout());
         setter.setProgressBar(progressBar, progress);
     }
 
@@ -1418,7 +1604,7 @@ public class Solo {
      */
 
     public void setSlidingDrawer(SlidingDrawer slidingDrawer, int status) {
-        waiter.waitForView(slidingDrawer, SMALLTIMEOUT);
+        waiter.waitForView(slidingDrawer, sleeper.getTimingProfile().getSmallTimeout());
         setter.setSlidingDrawer(slidingDrawer, status);
     }
 
@@ -1447,7 +1633,7 @@ public class Solo {
      */
 
     public void enterText(EditText editText, String text) {
-        waiter.waitForView(editText, SMALLTIMEOUT);
+        waiter.waitForView(editText, sleeper.getTimingProfile().getSmallTimeout());
         textEnterer.setEditText(editText, text);
     }
 
@@ -1476,7 +1662,7 @@ public class Solo {
      */
 
     public void typeText(EditText editText, String text) {
-        waiter.waitForView(editText, SMALLTIMEOUT);
+        waiter.waitForView(editText, sleeper.getTimingProfile().getSmallTimeout());
         textEnterer.typeText(editText, text);
     }
 
@@ -1501,7 +1687,7 @@ public class Solo {
      */
 
     public void clearEditText(EditText editText) {
-        waiter.waitForView(editText, SMALLTIMEOUT);
+        waiter.waitForView(editText, sleeper.getTimingProfile().getSmallTimeout());
         textEnterer.setEditText(editText, "");
     }
 
@@ -2124,7 +2310,7 @@ public class Solo {
     }
 
     /**
-     * Waits for the given Activity. Default timeout is 20 seconds.
+     * Waits for the given Activity. Default timeout is 20 seconds, see {@link TimingProfile#getTimeout()}.
      * 
      * @param name
      *            the name of the {@code Activity} to wait for e.g. {@code "MyActivity"}
@@ -2133,7 +2319,7 @@ public class Solo {
      */
 
     public boolean waitForActivity(String name) {
-        return waiter.waitForActivity(name, TIMEOUT);
+        return waiter.waitForActivity(name, sleeper.getTimingProfile().getTimeout());
     }
 
     /**
@@ -2164,6 +2350,20 @@ public class Solo {
         return activityUtils.getString(resId);
     }
 
+    /**
+     * Waits for the UI to be idle: the main thread has no pending messages, no window has a pending layout and no shown view has a running animation.
+     * Returns as soon as the UI is idle, unlike {@link #sleep(int)}.
+     * 
+     * @param timeout
+     *            the maximum amount of time in milliseconds to wait
+     * @return {@code true} if the UI is idle and {@code false} if it is still busy after the timeout
+     * 
+     */
+
+    public boolean waitForUiIdle(int timeout) {
+        return viewFetcher.getUiIdleWaiter().waitForUiIdle(timeout);
+    }
+
     /**
      * Robotium will sleep for a specified time.
      * 
@@ -30,6 +30,7 @@ class TextEnterer {
      * @param inst
      * @param clicker
      * @param webViewUtils
+     * @param sleeper
      */
     public TextEnterer(Instrumentation inst, Clicker clicker, WebViewUtils webViewUtils, Sleeper sleeper) {
         this.inst = inst;
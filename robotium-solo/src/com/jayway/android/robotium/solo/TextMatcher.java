@@ -0,0 +1,260 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.regex.Pattern;
+
+/**
+ * Matches texts against a search expression with the semantics of {@link java.util.regex.Pattern}, but classifies the expression once so that the common
+ * plain-text searches do not go through the regex engine:
+ * <ul>
+ * <li>{@link Kind#LITERAL}: no metacharacters, e.g. {@code "Log in"}. {@code find} is a substring search, {@code matches} is {@code equals}.</li>
+ * <li>{@link Kind#PREFIX}: a literal anchored with {@code ^} and/or followed by {@code .*}, e.g. {@code "^Total"} or {@code "Total.*"}.</li>
+ * <li>{@link Kind#REGEX}: everything else, matched with a compiled {@code Pattern}.</li>
+ * </ul>
+ * Metacharacters escaped with a backslash, e.g. {@code "\\$5"}, are part of the literal. Long literals are searched with a precomputed
+ * Boyer-Moore-Horspool shift table.
+ *
+ * Instances are immutable and shared through {@link PatternCache#getMatcher(String)}.
+ *
+ */
+
+final class TextMatcher {
+
+    /**
+     * How a search expression is matched.
+     */
+
+    enum Kind {
+        LITERAL,
+        PREFIX,
+        REGEX
+    }
+
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+    private static final int HORSPOOL_MIN_LENGTH = 8;
+
+    private final String regex;
+    private final Kind kind;
+    private final String literal;
+    private final boolean anchored;
+    private final boolean openEnd;
+    private final int[] shifts;
+    private Pattern pattern;
+
+    /**
+     * Classifies a search expression. Use {@link PatternCache#getMatcher(String)} to get a shared instance.
+     *
+     * @param regex
+     *            the search expression, interpreted as a regular expression
+     * @throws java.util.regex.PatternSyntaxException
+     *             if {@code regex} is not a literal and not a valid regular expression
+     */
+
+    TextMatcher(String regex) {
+        this.regex = regex;
+        int start = 0;
+        int end = regex.length();
+        final boolean isAnchored = end > 0 && regex.charAt(0) == '^';
+        if (isAnchored) {
+            start++;
+        }
+        final boolean isOpenEnd = end - start >= 2 && regex.startsWith(".*", end - 2);
+        if (isOpenEnd) {
+            end -= 2;
+        }
+        final String unescaped = unescape(regex, start, end);
+
+        if (unescaped == null) {
+            this.kind = Kind.REGEX;
+            this.literal = null;
+            this.anchored = false;
+            this.openEnd = false;
+            this.shifts = null;
+            this.pattern = Pattern.compile(regex);
+        } else {
+            this.kind = isAnchored || isOpenEnd ? Kind.PREFIX : Kind.LITERAL;
+            this.literal = unescaped;
+            this.anchored = isAnchored;
+            this.openEnd = isOpenEnd;
+            this.shifts = !isAnchored && unescaped.length() >= HORSPOOL_MIN_LENGTH ? buildShifts(unescaped) : null;
+        }
+    }
+
+    /**
+     * Returns how the search expression is matched.
+     *
+     * @return the kind of the search expression
+     */
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the literal that {@link #find(String)} searches for, if {@code find} is a plain substring search.
+     *
+     * @return the literal, or {@code null} if {@code find} is anchored or needs the regex engine
+     */
+
+    public String getSubstring() {
+        return kind != Kind.REGEX && !anchored ? literal : null;
+    }
+
+    /**
+     * Returns the compiled form of the search expression. Literal expressions are only compiled when this is called.
+     *
+     * @return the compiled {@code Pattern}
+     */
+
+    public synchronized Pattern getPattern() {
+        if (pattern == null) {
+            pattern = Pattern.compile(regex);
+        }
+        return pattern;
+    }
+
+    /**
+     * Checks if the search expression occurs in a text, like {@link java.util.regex.Matcher#find()}.
+     *
+     * @param text
+     *            the text to search
+     * @return {@code true} if the expression occurs in {@code text}
+     */
+
+    public boolean find(String text) {
+        switch (kind) {
+            case LITERAL:
+            case PREFIX:
+                if (anchored) {
+                    return text.startsWith(literal);
+                }
+                return indexOf(text) >= 0;
+            default:
+                return pattern.matcher(text).find();
+        }
+    }
+
+    /**
+     * Checks if the search expression matches a whole text, like {@link java.util.regex.Matcher#matches()}.
+     *
+     * @param text
+     *            the text to match
+     * @return {@code true} if the expression matches all of {@code text}
+     */
+
+    public boolean matches(String text) {
+        switch (kind) {
+            case LITERAL:
+            case PREFIX:
+                if (!openEnd) {
+                    return text.equals(literal);
+                }
+                // '.' does not match line terminators
+                return text.startsWith(literal) && !containsLineTerminator(text, literal.length());
+            default:
+                return pattern.matcher(text).matches();
+        }
+    }
+
+    /**
+     * Returns the index of the literal in a text, using the Boyer-Moore-Horspool shift table for long literals.
+     *
+     * @param text
+     *            the text to search
+     * @return the index of the first occurrence, or {@code -1}
+     */
+
+    private int indexOf(String text) {
+        if (shifts == null) {
+            return text.indexOf(literal);
+        }
+        final int last = literal.length() - 1;
+        final int limit = text.length() - last;
+        int position = 0;
+        while (position < limit) {
+            int i = last;
+            while (text.charAt(position + i) == literal.charAt(i)) {
+                if (i == 0) {
+                    return position;
+                }
+                i--;
+            }
+            position += shifts[text.charAt(position + last) & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the Boyer-Moore-Horspool shift table of a literal. Characters are bucketed by their low byte; each bucket keeps the smallest shift of its
+     * characters, which keeps the table small and the skips safe.
+     *
+     * @param literal
+     *            the literal to search for
+     * @return the shift table
+     */
+
+    private static int[] buildShifts(String literal) {
+        final int length = literal.length();
+        final int[] table = new int[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = length;
+        }
+        for (int i = 0; i < length - 1; i++) {
+            table[literal.charAt(i) & 0xFF] = length - 1 - i;
+        }
+        return table;
+    }
+
+    /**
+     * Converts a part of a search expression into the literal it matches.
+     *
+     * @param regex
+     *            the search expression
+     * @param start
+     *            the start of the part, inclusive
+     * @param end
+     *            the end of the part, exclusive
+     * @return the literal, or {@code null} if the part contains unescaped metacharacters or escape sequences such as {@code \d}
+     */
+
+    private static String unescape(String regex, int start, int end) {
+        StringBuilder builder = null;
+        for (int i = start; i < end; i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= end || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return null;
+                }
+                if (builder == null) {
+                    builder = new StringBuilder(end - start);
+                    builder.append(regex, start, i);
+                }
+                builder.append(regex.charAt(++i));
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else if (builder != null) {
+                builder.append(c);
+            }
+        }
+        return builder != null ? builder.toString() : regex.substring(start, end);
+    }
+
+    /**
+     * Checks if a text contains a line terminator as defined by {@link java.util.regex.Pattern}.
+     *
+     * @param text
+     *            the text to check
+     * @param from
+     *            the index to start at
+     * @return {@code true} if there is a line terminator at or after {@code from}
+     */
+
+    private static boolean containsLineTerminator(String text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
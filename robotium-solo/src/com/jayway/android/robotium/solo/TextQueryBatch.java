@@ -0,0 +1,197 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A set of text queries that are evaluated together, in one pass over the text views of a page. Queries that are plain substring searches, see
+ * {@link TextMatcher#getSubstring()}, are found with one {@link AhoCorasick} automaton; the others are matched one by one. Every query counts the text
+ * views whose text, error or hint it matches, like {@link RobotiumUtils#matches(String, ViewNode)}, and is satisfied once it has matched its minimum
+ * number of views. Views already evaluated on a previous page are skipped, see {@link ScannedViews}, so every view is counted once.
+ *
+ */
+
+class TextQueryBatch {
+
+    private final String[] regexes;
+    private final int[] minimumMatches;
+    private final TextMatcher[] matchers;
+    private final int[] matchCounts;
+    private final boolean[] satisfied;
+    private int unsatisfiedCount;
+
+    private final AhoCorasick automaton;
+    private final int[] substringQueries;
+    private final boolean[] substringFound;
+    private final boolean[] queryFound;
+
+    /**
+     * Constructs a batch.
+     *
+     * @param queries
+     *            the queries, mapped to the minimum number of views they must match. The keys <strong>will</strong> be interpreted as regular
+     *            expressions. A minimum below {@code 1} means {@code 1}
+     */
+
+    public TextQueryBatch(Map<String, Integer> queries) {
+        final int count = queries.size();
+        regexes = new String[count];
+        minimumMatches = new int[count];
+        matchers = new TextMatcher[count];
+        matchCounts = new int[count];
+        satisfied = new boolean[count];
+        queryFound = new boolean[count];
+        unsatisfiedCount = count;
+
+        int substringCount = 0;
+        int i = 0;
+        for (Map.Entry<String, Integer> query : queries.entrySet()) {
+            regexes[i] = query.getKey();
+            minimumMatches[i] = query.getValue() != null ? Math.max(query.getValue(), 1) : 1;
+            matchers[i] = PatternCache.getMatcher(regexes[i]);
+            if (matchers[i].getSubstring() != null) {
+                substringCount++;
+            }
+            i++;
+        }
+
+        substringQueries = new int[substringCount];
+        final String[] substrings = new String[substringCount];
+        int j = 0;
+        for (i = 0; i < count; i++) {
+            final String substring = matchers[i].getSubstring();
+            if (substring != null) {
+                substringQueries[j] = i;
+                substrings[j] = substring;
+                j++;
+            }
+        }
+        automaton = substringCount > 1 ? new AhoCorasick(substrings) : null;
+        substringFound = new boolean[substringCount];
+    }
+
+    /**
+     * Evaluates all unsatisfied queries against the newly exposed text views of a page.
+     *
+     * @param nodes
+     *            the records of the text views of the page
+     * @param scannedViews
+     *            the views evaluated on the previous pages of this search, to which the views of this page are added
+     * @return {@code true} if all queries are satisfied
+     */
+
+    public boolean evaluate(Collection<ViewNode> nodes, ScannedViews scannedViews) {
+        for (ViewNode node : nodes) {
+            if (unsatisfiedCount == 0) {
+                break;
+            }
+            final String text = node.getText();
+            if (text == null || !scannedViews.add(node)) {
+                continue;
+            }
+            clear(queryFound);
+            find(text);
+            if (node.getError() != null) {
+                find(node.getError());
+            }
+            if (text.equals("") && node.getHint() != null) {
+                find(node.getHint());
+            }
+            for (int i = 0; i < queryFound.length; i++) {
+                if (queryFound[i] && !satisfied[i]) {
+                    if (++matchCounts[i] >= minimumMatches[i]) {
+                        satisfied[i] = true;
+                        unsatisfiedCount--;
+                    }
+                }
+            }
+        }
+        return unsatisfiedCount == 0;
+    }
+
+    /**
+     * Forgets the views matched by the queries that are not yet satisfied, so that they are counted from scratch on the next evaluation.
+     */
+
+    public void resetUnsatisfied() {
+        for (int i = 0; i < satisfied.length; i++) {
+            if (!satisfied[i]) {
+                matchCounts[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the result of every query.
+     *
+     * @return the queries, in their original order, mapped to {@code true} if they were satisfied
+     */
+
+    public Map<String, Boolean> getResults() {
+        final Map<String, Boolean> results = new LinkedHashMap<String, Boolean>();
+        for (int i = 0; i < regexes.length; i++) {
+            results.put(regexes[i], satisfied[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Returns a description of the queries that are not satisfied, with the number of views they matched.
+     *
+     * @return the description
+     */
+
+    public String describeUnsatisfied() {
+        final StringBuilder description = new StringBuilder();
+        for (int i = 0; i < regexes.length; i++) {
+            if (!satisfied[i]) {
+                if (description.length() > 0) {
+                    description.append(", ");
+                }
+                description.append(regexes[i]).append(" (").append(matchCounts[i]).append('/').append(minimumMatches[i]).append(')');
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Marks the unsatisfied queries that occur in a text.
+     *
+     * @param text
+     *            the text
+     */
+
+    private void find(String text) {
+        if (automaton != null) {
+            clear(substringFound);
+            automaton.search(text, substringFound);
+            for (int j = 0; j < substringQueries.length; j++) {
+                if (substringFound[j]) {
+                    queryFound[substringQueries[j]] = true;
+                }
+            }
+        }
+        for (int i = 0; i < matchers.length; i++) {
+            if (satisfied[i] || queryFound[i] || (automaton != null && matchers[i].getSubstring() != null)) {
+                continue;
+            }
+            if (matchers[i].find(text)) {
+                queryFound[i] = true;
+            }
+        }
+    }
+
+    /**
+     * Sets all entries of an array to {@code false}.
+     *
+     * @param array
+     *            the array to clear
+     */
+
+    private static void clear(boolean[] array) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = false;
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.jayway.android.robotium.solo;
+
+/**
+ * The pause lengths and timeouts that {@link Solo} uses when it is not given explicit ones. A profile is set with
+ * {@link Solo#Solo(android.app.Instrumentation, android.app.Activity, BaseExtensionUtils, Clock, TimingProfile)}; the presets cover the common cases and
+ * a {@link Builder} tunes single values of a preset.
+ *
+ * <ul>
+ * <li>{@link #COMPAT} keeps the values Robotium has always used, with fixed pauses after actions.</li>
+ * <li>{@link #FAST} replaces the fixed pauses by waits for the UI to be idle, see {@link Solo#waitForUiIdle(int)}, and polls and settles more often, for
+ * throughput on fast devices.</li>
+ * <li>{@link #CI_EMULATOR} doubles the pauses and triples the timeouts, for slow emulators on shared build machines.</li>
+ * </ul>
+ *
+ * Example:
+ *
+ * <pre>
+ * TimingProfile timing = new TimingProfile.Builder(TimingProfile.FAST).setTimeout(30000).build();
+ * solo = new Solo(getInstrumentation(), getActivity(), null, Clock.SYSTEM, timing);
+ * </pre>
+ *
+ */
+
+public final class TimingProfile {
+
+    /**
+     * The values Robotium has always used.
+     */
+
+    public static final TimingProfile COMPAT = new Builder("compat").build();
+
+    /**
+     * Pauses that end as soon as the UI is idle, with shorter settle times and faster polling.
+     */
+
+    public static final TimingProfile FAST = new Builder("fast").setIdleSync(true).setMiniSleep(50).setSpinWait(250).setSettleTimeout(250)
+            .setPollDelays(8, 250).build();
+
+    /**
+     * Longer pauses and timeouts for slow emulators.
+     */
+
+    public static final TimingProfile CI_EMULATOR = new Builder("ci-emulator").setPause(1000).setMiniPause(600).setMiniSleep(200).setSpinWait(1000)
+            .setSettleTimeout(1000).setTimeout(60000).setSmallTimeout(30000).setSearchTimeout(15000).setPollDelays(16, 1000).build();
+
+    private final String name;
+    private final boolean idleSync;
+    private final int pause;
+    private final int miniPause;
+    private final int miniSleep;
+    private final int spinWait;
+    private final int settleTimeout;
+    private final int timeout;
+    private final int smallTimeout;
+    private final int searchTimeout;
+    private final int initialPollDelay;
+    private final int maxPollDelay;
+
+    private TimingProfile(Builder builder) {
+        this.name = builder.name;
+        this.idleSync = builder.idleSync;
+        this.pause = builder.pause;
+        this.miniPause = builder.miniPause;
+        this.miniSleep = builder.miniSleep;
+        this.spinWait = builder.spinWait;
+        this.settleTimeout = builder.settleTimeout;
+        this.timeout = builder.timeout;
+        this.smallTimeout = builder.smallTimeout;
+        this.searchTimeout = builder.searchTimeout;
+        this.initialPollDelay = builder.initialPollDelay;
+        this.maxPollDelay = builder.maxPollDelay;
+    }
+
+    /**
+     * Returns the name of this profile, e.g. {@code "compat"}.
+     *
+     * @return the name
+     */
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Checks if the pauses after actions end as soon as the UI is idle instead of after their full length.
+     *
+     * @return {@code true} if pauses wait for the UI to be idle
+     */
+
+    public boolean isIdleSync() {
+        return idleSync;
+    }
+
+    /**
+     * Returns the pause after actions such as key presses and the longest wait for the UI to settle after a click or a scroll. Compat value: 500 ms.
+     *
+     * @return the pause in milliseconds
+     */
+
+    public int getPause() {
+        return pause;
+    }
+
+    /**
+     * Returns the short pause, e.g. before checking if a dialog has closed. Compat value: 300 ms.
+     *
+     * @return the pause in milliseconds
+     */
+
+    public int getMiniPause() {
+        return miniPause;
+    }
+
+    /**
+     * Returns the pause between retries of a failed touch or key event. Compat value: 100 ms.
+     *
+     * @return the pause in milliseconds
+     */
+
+    public int getMiniSleep() {
+        return miniSleep;
+    }
+
+    /**
+     * Returns the pause between two steps of scrolling to the top or bottom and between two checks for a view to show up. Compat value: 500 ms.
+     *
+     * @return the pause in milliseconds
+     */
+
+    public int getSpinWait() {
+        return spinWait;
+    }
+
+    /**
+     * Returns the longest wait for a list to redraw after it has been scrolled. Compat value: 500 ms.
+     *
+     * @return the timeout in milliseconds
+     */
+
+    public int getSettleTimeout() {
+        return settleTimeout;
+    }
+
+    /**
+     * Returns the timeout of waits for texts, views and activities. Compat value: 20000 ms.
+     *
+     * @return the timeout in milliseconds
+     */
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns the timeout of waits for the view an action is performed on, e.g. the text to click on. Compat value: 10000 ms.
+     *
+     * @return the timeout in milliseconds
+     */
+
+    public int getSmallTimeout() {
+        return smallTimeout;
+    }
+
+    /**
+     * Returns the timeout of searches, e.g. {@link Solo#searchText(String)}. Compat value: 5000 ms.
+     *
+     * @return the timeout in milliseconds
+     */
+
+    public int getSearchTimeout() {
+        return searchTimeout;
+    }
+
+    /**
+     * Returns the delay before the second check of a wait, see {@link PollingPolicy}. Compat value: 16 ms.
+     *
+     * @return the delay in milliseconds
+     */
+
+    public int getInitialPollDelay() {
+        return initialPollDelay;
+    }
+
+    /**
+     * Returns the longest delay between two checks of a wait, see {@link PollingPolicy}. Compat value: 500 ms.
+     *
+     * @return the delay in milliseconds
+     */
+
+    public int getMaxPollDelay() {
+        return maxPollDelay;
+    }
+
+    @Override
+    public String toString() {
+        return "TimingProfile[" + name + (idleSync ? ", idle sync" : "") + ", pause=" + pause + "/" + miniPause + "/" + miniSleep + ", spin=" + spinWait
+                + ", settle=" + settleTimeout + ", timeouts=" + timeout + "/" + smallTimeout + "/" + searchTimeout + ", polls=" + initialPollDelay + ".."
+                + maxPollDelay + "]";
+    }
+
+    /**
+     * Builds a {@link TimingProfile}, starting from the compat values or from the values of another profile.
+     *
+     */
+
+    public static final class Builder {
+
+        private String name;
+        private boolean idleSync = false;
+        private int pause = 500;
+        private int miniPause = 300;
+        private int miniSleep = 100;
+        private int spinWait = 500;
+        private int settleTimeout = 500;
+        private int timeout = 20000;
+        private int smallTimeout = 10000;
+        private int searchTimeout = 5000;
+        private int initialPollDelay = PollingPolicy.DEFAULT_INITIAL_DELAY;
+        private int maxPollDelay = PollingPolicy.DEFAULT_MAX_DELAY;
+
+        /**
+         * Constructs a builder with the compat values.
+         *
+         * @param name
+         *            the name of the profile to build
+         */
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Constructs a builder with the values of a profile.
+         *
+         * @param profile
+         *            the profile to start from
+         */
+
+        public Builder(TimingProfile profile) {
+            this.name = profile.name + "*";
+            this.idleSync = profile.idleSync;
+            this.pause = profile.pause;
+            this.miniPause = profile.miniPause;
+            this.miniSleep = profile.miniSleep;
+            this.spinWait = profile.spinWait;
+            this.settleTimeout = profile.settleTimeout;
+            this.timeout = profile.timeout;
+            this.smallTimeout = profile.smallTimeout;
+            this.searchTimeout = profile.searchTimeout;
+            this.initialPollDelay = profile.initialPollDelay;
+            this.maxPollDelay = profile.maxPollDelay;
+        }
+
+        /**
+         * Sets the name.
+         *
+         * @param name
+         *            the name
+         * @return this builder
+         */
+
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Sets the value of {@link TimingProfile#isIdleSync()}.
+         *
+         * @param idleSync
+         *            the new value
+         * @return this builder
+         */
+
+        public Builder setIdleSync(boolean idleSync) {
+            this.idleSync = idleSync;
+            return this;
+        }
+
+        /**
+         * Sets the value of {@link TimingProfile#getPause()}.
+         *
+         * @param pause
+         *            the new value in milliseconds
+         * @return this builder
+         */
+
+        public Builder setPause(int pause) {
+            this.pause = checkNotNegative(pause);
+            return this;
+        }
+
+        /**
+         * Sets the value of {@link TimingProfile#getMiniPause()}.
+         *
+         * @param miniPause
+         *            the new value in milliseconds
+         * @return this builder
+         */
+
+        public Builder setMiniPause(int miniPause) {
+            this.miniPause = checkNotNegative(miniPause);
+            return this;
+        }
+
+        /**
+         * Sets the value of {@link TimingProfile#getMiniSleep()}.
+         *
+         * @param miniSleep
+         *            the new value in milliseconds
+         * @return this builder
+         */
+
+        public Builder setMiniSleep(int miniSleep) {
+            this.miniSleep = checkNotNegative(miniSleep);
+            return this;
+        }
+
+        /**
+         * Sets the value of {@link TimingProfile#getSpinWait()}.
+         *
+         * @param spinWait
+         *            the new value in milliseconds
+         * @return this builder
+         */
+
+        public Builder setSpinWait(int spinWait) {
+            this.spinWait = checkNotNegative(spinWait);
+            return this;
+        }
+
+        /**
+         * Sets the value of {@link TimingProfile#getSettleTimeout()}.
+         *
+         * @param settleTimeout
+         *            the new value in milliseconds
+         * @return this builder
+         */
+
+        public Builder setSettleTimeout(int settleTimeout) {
+            this.settleTimeout = checkNotNegative(settleTimeout);
+            return this;
+        }
+
+        /**
+         * Sets the value of {@link TimingProfile#getTimeout()}.
+         *
+         * @param timeout
+         *            the new value in milliseconds
+         * @return this builder
+         */
+
+        public Builder setTimeout(int timeout) {
+            this.timeout = checkNotNegative(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the value of {@link TimingProfile#getSmallTimeout()}.
+         *
+         * @param smallTimeout
+         *            the new value in milliseconds
+         * @return this builder
+         */
+
+        public Builder setSmallTimeout(int smallTimeout) {
+            this.smallTimeout = checkNotNegative(smallTimeout);
+            return this;
+        }
+
+        /**
+         * Sets the value of {@link TimingProfile#getSearchTimeout()}.
+         *
+         * @param searchTimeout
+         *            the new value in milliseconds
+         * @return this builder
+         */
+
+        public Builder setSearchTimeout(int searchTimeout) {
+            this.searchTimeout = checkNotNegative(searchTimeout);
+            return this;
+        }
+
+        /**
+         * Sets the delays of the {@link PollingPolicy} of the profile.
+         *
+         * @param initialPollDelay
+         *            the delay before the second check of a wait, in milliseconds
+         * @param maxPollDelay
+         *            the maximum delay between two checks, in milliseconds
+         * @return this builder
+         */
+
+        public Builder setPollDelays(int initialPollDelay, int maxPollDelay) {
+            if (initialPollDelay < 1 || maxPollDelay < initialPollDelay) {
+                throw new IllegalArgumentException("Invalid polling delays: " + initialPollDelay + ", " + maxPollDelay);
+            }
+            this.initialPollDelay = initialPollDelay;
+            this.maxPollDelay = maxPollDelay;
+            return this;
+        }
+
+        /**
+         * Builds the profile.
+         *
+         * @return the new profile
+         */
+
+        public TimingProfile build() {
+            return new TimingProfile(this);
+        }
+
+        private static int checkNotNegative(int millis) {
+            if (millis < 0) {
+                throw new IllegalArgumentException("Negative time: " + millis);
+            }
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Keeps a generation counter that is increased whenever the layout of a tracked window changes or one of its views scrolls. Listeners for global
+ * layout and scroll changes are registered on the {@code ViewTreeObserver} of each window root view. Drawing alone is not counted, so an animation such as
+ * an indeterminate {@code ProgressBar} or a blinking cursor does not wake up the waiting threads every frame. Threads polling the UI can block in
+ * {@link #awaitChange(int, long)} until the next change instead of sleeping for a fixed time.
+ *
+ */
+
+class UiChangeTracker implements ViewTreeObserver.OnGlobalLayoutListener, ViewTreeObserver.OnScrollChangedListener {
+
+    private final int MAX_WAIT = 500;
+    private final Clock clock;
+    private final WaitAccounting waitAccounting;
+
+    private final Map<View, ViewTreeObserver> observers = new WeakHashMap<View, ViewTreeObserver>();
+    private final Map<View, ViewTreeObserver> pendingObservers = new WeakHashMap<View, ViewTreeObserver>();
+    private volatile int generation;
+
+    /**
+     * Constructs this object.
+     *
+     * @param clock
+     *            the {@code Clock} that end times are measured with
+     * @param waitAccounting
+     *            the {@code WaitAccounting} to record the time waited in
+     */
+
+    public UiChangeTracker(Clock clock, WaitAccounting waitAccounting) {
+        this.clock = clock;
+        this.waitAccounting = waitAccounting;
+    }
+
+    /**
+     * Returns the current generation. It changes every time the UI of a tracked window changes.
+     *
+     * @return the current generation
+     */
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Waits until the generation differs from {@code generation}, or until {@code endTime}. A single wait is bounded, so that changes to windows that are
+     * not tracked yet are picked up by the next poll of the caller.
+     *
+     * @param generation
+     *            the generation the caller has seen, see {@link #getGeneration()}
+     * @param endTime
+     *            the time, as returned by {@link Clock#uptimeMillis()}, after which to stop waiting
+     * @return {@code true} if the UI has changed and {@code false} if the wait timed out or was interrupted
+     */
+
+    public boolean awaitChange(int generation, long endTime) {
+        final long begin = clock.uptimeMillis();
+        final long waitEnd = Math.min(endTime, clock.getEndTime(MAX_WAIT));
+        try {
+            synchronized (this) {
+                while (this.generation == generation) {
+                    final long remaining = waitEnd - clock.uptimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    try {
+                        clock.await(this, remaining);
+                    } catch (InterruptedException ignored) {
+                        // Cleared like an interrupted sleep, see Clock#sleep(long)
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            waitAccounting.recordWait(clock.uptimeMillis() - begin);
+        }
+    }
+
+    /**
+     * Starts tracking the given windows, if not already tracked. The listeners are registered on the UI thread, so a window is not tracked until its
+     * registration has run, see {@link #isTracking(View[])}.
+     *
+     * @param windowViews
+     *            the root views of the windows to track
+     */
+
+    public synchronized void track(View[] windowViews) {
+        if (windowViews == null) {
+            return;
+        }
+        for (final View view : windowViews) {
+            if (view == null) {
+                continue;
+            }
+            final ViewTreeObserver observer = view.getViewTreeObserver();
+            if (observer == null || observers.get(view) == observer || pendingObservers.get(view) == observer) {
+                continue;
+            }
+            observers.remove(view);
+            pendingObservers.put(view, observer);
+            view.post(new Runnable() {
+                public void run() {
+                    register(view, observer);
+                }
+            });
+        }
+    }
+
+    /**
+     * Checks if all the given windows are tracked, i.e. if any change to them would change the generation.
+     *
+     * @param windowViews
+     *            the root views of the windows
+     * @return {@code true} if all the windows are tracked
+     */
+
+    public synchronized boolean isTracking(View[] windowViews) {
+        if (windowViews == null) {
+            return false;
+        }
+        for (View view : windowViews) {
+            if (view == null) {
+                continue;
+            }
+            final ViewTreeObserver observer = observers.get(view);
+            if (observer == null || observer != view.getViewTreeObserver() || !observer.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Registers the listeners on a {@code ViewTreeObserver}. Runs on the UI thread.
+     *
+     * @param view
+     *            the window root view
+     * @param observer
+     *            the {@code ViewTreeObserver} of {@code view}
+     */
+
+    private void register(View view, ViewTreeObserver observer) {
+        if (observer.isAlive()) {
+            observer.addOnGlobalLayoutListener(this);
+            observer.addOnScrollChangedListener(this);
+        }
+        synchronized (this) {
+            if (pendingObservers.get(view) == observer) {
+                pendingObservers.remove(view);
+                observers.put(view, observer);
+            }
+        }
+        onUiChanged();
+    }
+
+    /**
+     * Increases the generation and wakes up the threads waiting for a change.
+     */
+
+    private void onUiChanged() {
+        synchronized (this) {
+            generation++;
+            notifyAll();
+        }
+    }
+
+    public void onGlobalLayout() {
+        onUiChanged();
+    }
+
+    public void onScrollChanged() {
+        onUiChanged();
+    }
+}
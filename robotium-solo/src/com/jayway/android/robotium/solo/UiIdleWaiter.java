@@ -0,0 +1,220 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.animation.Animation;
+
+/**
+ * Waits until the UI is quiescent instead of sleeping for a fixed time. The UI is idle when the message queue of the main {@code Looper} has run out of
+ * messages, no window has a pending layout and no shown view has a running animation. The check is an {@code IdleHandler} on the main message queue, so
+ * it runs each time the queue drains; while the UI is busy, the layout pass or the next animation frame drains the queue again and the check is repeated.
+ * The pending layouts are checked every time, which is cheap; the views are only walked for animations once per drawn frame, as an animation that is
+ * still running draws the next frame.
+ *
+ * The wait returns as soon as the UI is idle, which after most actions is a frame or two, and never takes longer than its timeout, which callers set to
+ * the fixed pause they used to sleep.
+ *
+ */
+
+class UiIdleWaiter {
+
+    private final ViewFetcher viewFetcher;
+    private final Clock clock;
+    private final WaitAccounting waitAccounting;
+    private final ArrayList<View> pendingViews = new ArrayList<View>();
+
+    /**
+     * Constructs this object.
+     *
+     * @param viewFetcher
+     *            the {@code ViewFetcher} instance, used to check the windows for pending layouts and animations. {@code null} to only wait for the main
+     *            {@code Looper} to be idle
+     * @param sleeper
+     *            the {@code Sleeper} with the {@code Clock} and the {@code WaitAccounting} to record the time waited in
+     */
+
+    public UiIdleWaiter(ViewFetcher viewFetcher, Sleeper sleeper) {
+        this.viewFetcher = viewFetcher;
+        this.clock = sleeper.getClock();
+        this.waitAccounting = sleeper.getWaitAccounting();
+    }
+
+    /**
+     * Waits for the UI to be idle.
+     *
+     * @param timeout
+     *            the maximum amount of time in milliseconds to wait
+     * @return {@code true} if the UI is idle and {@code false} if the wait timed out. Always {@code false} on the UI thread, which cannot wait for itself
+     */
+
+    public boolean waitForUiIdle(long timeout) {
+        if (!canWait()) {
+            return false;
+        }
+        final IdleCheck check = new IdleCheck();
+        final long begin = clock.uptimeMillis();
+        new Handler(Looper.getMainLooper()).post(check);
+        try {
+            return check.latch.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ignored) {
+            // Cleared like an interrupted sleep, see Clock#sleep(long)
+            return false;
+        } finally {
+            check.cancelled = true;
+            waitAccounting.recordWait(clock.uptimeMillis() - begin);
+        }
+    }
+
+    /**
+     * Checks if the calling thread can wait for the UI, i.e. if there is a main {@code Looper} and the calling thread is not its thread.
+     *
+     * @return {@code true} if {@link #waitForUiIdle(long)} can wait
+     */
+
+    public boolean canWait() {
+        final Looper mainLooper = Looper.getMainLooper();
+        return mainLooper != null && Looper.myLooper() != mainLooper;
+    }
+
+    /**
+     * Returns the time the shown windows were last drawn. Runs on the UI thread.
+     *
+     * @param windows
+     *            the window root views
+     * @return the sum of the drawing times of the windows, which increases whenever one of them draws a frame
+     */
+
+    private static long getDrawingTime(View[] windows) {
+        long drawingTime = 0;
+        for (View window : windows) {
+            if (window != null) {
+                drawingTime += window.getDrawingTime();
+            }
+        }
+        return drawingTime;
+    }
+
+    /**
+     * Checks if one of the shown windows has a pending layout. Runs on the UI thread.
+     *
+     * @param windows
+     *            the window root views
+     * @return {@code true} if a layout is pending
+     */
+
+    private static boolean isLayoutRequested(View[] windows) {
+        for (View window : windows) {
+            if (window != null && window.isLayoutRequested()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a shown view has a running animation. Walks the visible views of the windows. Runs on the UI thread, which is the only thread that
+     * uses {@code pendingViews}.
+     *
+     * @param windows
+     *            the window root views
+     * @return {@code true} if an animation is running
+     */
+
+    private boolean isAnimating(View[] windows) {
+        final ArrayList<View> pending = pendingViews;
+        pending.clear();
+        for (View window : windows) {
+            if (window != null) {
+                pending.add(window);
+            }
+        }
+        try {
+            while (!pending.isEmpty()) {
+                final View view = pending.remove(pending.size() - 1);
+                final Animation animation = view.getAnimation();
+                if (animation != null && !animation.hasEnded() && view.isShown()) {
+                    return true;
+                }
+                if (view instanceof ViewGroup) {
+                    final ViewGroup group = (ViewGroup) view;
+                    for (int i = 0; i < group.getChildCount(); i++) {
+                        final View child = group.getChildAt(i);
+                        if (child != null && child.getVisibility() == View.VISIBLE) {
+                            pending.add(child);
+                        }
+                    }
+                }
+            }
+            return false;
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Registers itself as {@code IdleHandler} of the main message queue and releases the waiting thread the first time the queue drains while the UI is
+     * not busy.
+     *
+     */
+
+    private final class IdleCheck implements Runnable, MessageQueue.IdleHandler {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        volatile boolean cancelled;
+        private boolean walked;
+        private long lastDrawingTime;
+        private boolean animating;
+
+        public void run() {
+            if (!cancelled) {
+                Looper.myQueue().addIdleHandler(this);
+            }
+        }
+
+        public boolean queueIdle() {
+            if (cancelled) {
+                return false;
+            }
+            if (isBusy()) {
+                // Called again when the queue drains after the next layout or frame
+                return true;
+            }
+            latch.countDown();
+            return false;
+        }
+
+        /**
+         * Checks if the shown windows have a pending layout or a running animation. The views are walked for animations again only if a frame has
+         * been drawn since the last walk.
+         *
+         * @return {@code true} if the UI is still changing
+         */
+
+        private boolean isBusy() {
+            if (viewFetcher == null) {
+                return false;
+            }
+            final View[] windows = viewFetcher.getWindowDecorViews();
+            if (windows == null) {
+                return false;
+            }
+            if (isLayoutRequested(windows)) {
+                return true;
+            }
+            final long drawingTime = getDrawingTime(windows);
+            if (!walked || drawingTime != lastDrawingTime) {
+                walked = true;
+                lastDrawingTime = drawingTime;
+                animating = isAnimating(windows);
+            }
+            return animating;
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.jayway.android.robotium.solo;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 
+import android.app.Instrumentation;
+import android.os.Looper;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Checkable;
 
 /**
  * Contains view methods. Examples are getViews(), getCurrentTextViews(), getCurrentImageViews().
@@ -17,10 +20,43 @@ import android.view.ViewGroup;
 
 class ViewFetcher {
 
+    private final Instrumentation inst;
     private final ActivityUtils activityUtils;
     private final Sleeper sleeper;
     private Scroller scroller;
-    private String windowManagerString;
+    private final WindowManagerAccessor windowManagerAccessor;
+    private final int MAX_SNAPSHOT_AGE = 500;
+    private int lastSnapshotSize = 64;
+    private final ViewTraverser traverser;
+    private final UiChangeTracker uiChangeTracker;
+    private final UiIdleWaiter uiIdleWaiter;
+    private ViewSnapshot cachedSnapshot;
+    private int cachedGeneration;
+    private View cachedRecentDecorView;
+    private View[] cachedWindowViews;
+    private long cachedTime;
+    private Object cachedWait;
+
+    /**
+     * Constructs this object.
+     *
+     * @param inst
+     *            the {@code Instrumentation} instance, used to capture snapshots on the UI thread. {@code null} to capture them on the calling thread
+     * @param activityUtils
+     *            the {@code ActivityUtils} instance
+     * @param sleeper
+     *            the {@code Sleeper} instance
+     */
+
+    public ViewFetcher(Instrumentation inst, ActivityUtils activityUtils, Sleeper sleeper) {
+        this.inst = inst;
+        this.activityUtils = activityUtils;
+        this.sleeper = sleeper;
+        this.traverser = new ViewTraverser(this);
+        this.uiChangeTracker = new UiChangeTracker(sleeper.getClock(), sleeper.getWaitAccounting());
+        this.uiIdleWaiter = new UiIdleWaiter(this, sleeper);
+        this.windowManagerAccessor = new WindowManagerAccessor();
+    }
 
     /**
      * Constructor
@@ -28,10 +64,9 @@ class ViewFetcher {
      * @param activityUtils
      * @param sleeper
      */
+
     public ViewFetcher(ActivityUtils activityUtils, Sleeper sleeper) {
-        this.activityUtils = activityUtils;
-        this.sleeper = sleeper;
-        setWindowManagerString();
+        this(null, activityUtils, sleeper);
     }
 
     /**
@@ -99,26 +134,225 @@ class ViewFetcher {
      */
 
     public ArrayList<View> getAllViews(boolean onlySufficientlyVisible) {
+        return getSnapshot().getViews(onlySufficientlyVisible);
+    }
+
+    /**
+     * Returns a snapshot of the views in the shown DecorViews. The snapshot is captured in one traversal on the UI thread, which copies the state of every
+     * view into the arrays of the snapshot, so the UI thread is blocked for one short burst and the snapshot is consistent. The last snapshot is only
+     * reused by the later checks of the polling wait that captured it, as long as the same windows are shown, none of them has been laid out or
+     * scrolled since and it is younger than {@code MAX_SNAPSHOT_AGE}. Any other call, e.g. a read right after a click, captures the current state, as
+     * checking a box or changing a text within its bounds does not lay out the window. The age limit catches such changes during a wait.
+     * 
+     * @return a snapshot of all the views contained in the DecorViews
+     * 
+     */
+
+    public ViewSnapshot getSnapshot() {
+        activityUtils.getCurrentActivity(false);
+        final View[] views = getWindowDecorViews();
+        final View recentDecorView = views != null ? getRecentDecorView(views) : null;
+        final Object wait = sleeper.getCurrentWait();
+
+        synchronized (this) {
+            if (wait != null && cachedWait == wait && cachedSnapshot != null && cachedGeneration == uiChangeTracker.getGeneration()
+                    && cachedRecentDecorView == recentDecorView && Arrays.equals(cachedWindowViews, views) && uiChangeTracker.isTracking(views)
+                    && sleeper.getClock().uptimeMillis() - cachedTime < MAX_SNAPSHOT_AGE) {
+                return cachedSnapshot;
+            }
+        }
+
+        final float displayHeight = getDisplayHeight();
+        final ViewSnapshot[] captured = new ViewSnapshot[1];
+        runOnMainSync(new Runnable() {
+            public void run() {
+                captured[0] = captureSnapshot(displayHeight, wait);
+            }
+        });
+        sleeper.getWaitAccounting().recordTraversal();
+        return captured[0];
+    }
+
+    /**
+     * Captures a new snapshot of the views in the shown DecorViews and caches it. Runs on the UI thread, so the windows are read and traversed without the
+     * UI thread changing them in between.
+     * 
+     * @param displayHeight
+     *            the height of the display
+     * @param wait
+     *            the polling wait of the calling thread that may reuse the snapshot, or {@code null}
+     * @return the captured snapshot
+     * 
+     */
+
+    private ViewSnapshot captureSnapshot(float displayHeight, Object wait) {
+        final int generation = uiChangeTracker.getGeneration();
+        final View[] views = getWindowDecorViews();
+        final View recentDecorView = views != null ? getRecentDecorView(views) : null;
+        final ViewSnapshot snapshot = new ViewSnapshot(lastSnapshotSize);
+
+        if (views != null && views.length > 0) {
+            final View[] nonDecorViews = getNonDecorViews(views);
+            for (int i = 0; i < nonDecorViews.length; i++) {
+                addWindow(snapshot, nonDecorViews[i], displayHeight);
+            }
+            addWindow(snapshot, recentDecorView, displayHeight);
+        }
+        uiChangeTracker.track(views);
+
+        synchronized (this) {
+            lastSnapshotSize = snapshot.size();
+            cachedSnapshot = snapshot;
+            cachedGeneration = generation;
+            cachedRecentDecorView = recentDecorView;
+            cachedWindowViews = views != null ? views.clone() : null;
+            cachedTime = sleeper.getClock().uptimeMillis();
+            cachedWait = wait;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Adds the views of a window to a snapshot.
+     * 
+     * @param snapshot
+     *            the snapshot to add the views to
+     * @param root
+     *            the window root view
+     * @param displayHeight
+     *            the height of the display
+     * 
+     */
+
+    private void addWindow(ViewSnapshot snapshot, View root, float displayHeight) {
+        if (!(root instanceof ViewGroup)) {
+            return;
+        }
+        try {
+            snapshot.beginWindow(root, displayHeight);
+            traverser.traverse((ViewGroup) root, snapshot, false);
+        } catch (Exception ignored) {
+        } finally {
+            snapshot.endWindow();
+        }
+    }
+
+    /**
+     * Reads the checked state of a view on the UI thread, for checks that verify the result of an action and must not see a stale state.
+     * 
+     * @param view
+     *            the view to read
+     * @return {@code true} if {@code view} is {@code Checkable} and checked
+     * 
+     */
+
+    public boolean isChecked(final View view) {
+        if (!(view instanceof Checkable)) {
+            return false;
+        }
+        final boolean[] checked = new boolean[1];
+        runOnMainSync(new Runnable() {
+            public void run() {
+                checked[0] = ((Checkable) view).isChecked();
+            }
+        });
+        return checked[0];
+    }
+
+    /**
+     * Runs a {@code Runnable} on the UI thread and waits for it to finish. Runs it directly if there is no {@code Instrumentation} or if already on the UI
+     * thread.
+     * 
+     * @param runnable
+     *            the {@code Runnable} to run
+     * 
+     */
+
+    private void runOnMainSync(Runnable runnable) {
+        if (inst == null || Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            inst.runOnMainSync(runnable);
+        }
+    }
+
+    /**
+     * Visits the views in the shown DecorViews, in the same order as {@link #getSnapshot()}, without building a snapshot. The visitor can end the traversal
+     * or skip subtrees, which makes first-match queries cheaper than fetching all views.
+     * 
+     * @param visitor
+     *            the {@code ViewVisitor} to visit the views with
+     * @param computeVisibility
+     *            {@code true} if it should be computed whether each view is sufficiently shown
+     * @return {@code true} if the visitor stopped the traversal
+     * 
+     */
+
+    public boolean visit(ViewVisitor visitor, boolean computeVisibility) {
+        activityUtils.getCurrentActivity(false);
         final View[] views = getWindowDecorViews();
-        final ArrayList<View> allViews = new ArrayList<View>();
-        final View[] nonDecorViews = getNonDecorViews(views);
+        sleeper.getWaitAccounting().recordTraversal();
 
         if (views != null && views.length > 0) {
-            View view;
+            final View[] nonDecorViews = getNonDecorViews(views);
             for (int i = 0; i < nonDecorViews.length; i++) {
-                view = nonDecorViews[i];
                 try {
-                    addChildren(allViews, (ViewGroup) view, onlySufficientlyVisible);
+                    if (traverser.traverse((ViewGroup) nonDecorViews[i], visitor, computeVisibility)) {
+                        return true;
+                    }
                 } catch (Exception ignored) {
                 }
             }
-            view = getRecentDecorView(views);
             try {
-                addChildren(allViews, (ViewGroup) view, onlySufficientlyVisible);
+                return traverser.traverse((ViewGroup) getRecentDecorView(views), visitor, computeVisibility);
             } catch (Exception ignored) {
             }
         }
-        return allViews;
+        return false;
+    }
+
+    /**
+     * Returns the clock that timeouts are measured with.
+     * 
+     * @return the {@code Clock} instance
+     * 
+     */
+
+    public Clock getClock() {
+        return sleeper.getClock();
+    }
+
+    /**
+     * Returns the profile with the pause lengths and timeouts.
+     * 
+     * @return the {@code TimingProfile} instance
+     * 
+     */
+
+    public TimingProfile getTimingProfile() {
+        return sleeper.getTimingProfile();
+    }
+
+    /**
+     * Returns the {@code UiChangeTracker} that is notified when the shown windows change.
+     * 
+     * @return the {@code UiChangeTracker} instance
+     * 
+     */
+
+    public UiChangeTracker getUiChangeTracker() {
+        return uiChangeTracker;
+    }
+
+    /**
+     * Returns the {@code UiIdleWaiter} that waits for the shown windows to be idle.
+     * 
+     * @return the {@code UiIdleWaiter} instance
+     * 
+     */
+
+    public UiIdleWaiter getUiIdleWaiter() {
+        return uiIdleWaiter;
     }
 
     /**
@@ -216,40 +450,13 @@ class ViewFetcher {
             views.add(parentToUse);
 
             if (parentToUse instanceof ViewGroup) {
-                addChildren(views, (ViewGroup) parentToUse, onlySufficientlyVisible);
+                sleeper.getWaitAccounting().recordTraversal();
+                traverser.traverse((ViewGroup) parentToUse, views, onlySufficientlyVisible);
             }
         }
         return views;
     }
 
-    /**
-     * Adds all children of {@code viewGroup} (recursively) into {@code views}.
-     * 
-     * @param views
-     *            an {@code ArrayList} of {@code View}s
-     * @param viewGroup
-     *            the {@code ViewGroup} to extract children from
-     * @param onlySufficientlyVisible
-     *            if only sufficiently visible views should be returned
-     * 
-     */
-
-    private void addChildren(ArrayList<View> views, ViewGroup viewGroup, boolean onlySufficientlyVisible) {
-        for (int i = 0; i < viewGroup.getChildCount(); i++) {
-            final View child = viewGroup.getChildAt(i);
-
-            if (onlySufficientlyVisible && isViewSufficientlyShown(child))
-                views.add(child);
-
-            else if (!onlySufficientlyVisible)
-                views.add(child);
-
-            if (child instanceof ViewGroup) {
-                addChildren(views, (ViewGroup) child, onlySufficientlyVisible);
-            }
-        }
-    }
-
     /**
      * Returns true if the view is sufficiently shown
      * 
@@ -298,7 +505,7 @@ class ViewFetcher {
         View parent = getScrollOrListParent(view);
         final float windowHeight;
         if (parent == null) {
-            windowHeight = activityUtils.getCurrentActivity(false).getWindowManager().getDefaultDisplay().getHeight();
+            windowHeight = getDisplayHeight();
         } else {
             parent.getLocationOnScreen(xyParent);
             windowHeight = xyParent[1] + parent.getHeight();
@@ -307,6 +514,16 @@ class ViewFetcher {
         return windowHeight;
     }
 
+    /**
+     * Returns the height of the default display of the current {@code Activity}
+     * 
+     * @return the height of the display
+     */
+
+    public float getDisplayHeight() {
+        return activityUtils.getCurrentActivity(false).getWindowManager().getDefaultDisplay().getHeight();
+    }
+
     /**
      * Returns an {@code ArrayList} of {@code View}s of the specified {@code Class} located in the current {@code Activity}.
      * 
@@ -330,9 +547,25 @@ class ViewFetcher {
      */
 
     public <T extends View> ArrayList<T> getCurrentViews(Class<T> classToFilterBy, View parent) {
+        if (parent == null) {
+            return getSnapshot().getViews(classToFilterBy, true, false);
+        }
         return RobotiumUtils.filterViews(classToFilterBy, getViews(parent, true));
     }
 
+    /**
+     * Returns an {@code ArrayList} of the sufficiently visible and shown {@code View}s of the specified {@code Class} located in the current
+     * {@code Activity}. Equivalent to filtering {@link #getCurrentViews(Class)} with {@link RobotiumUtils#removeInvisibleViews(ArrayList)}.
+     * 
+     * @param classToFilterBy
+     *            return all instances of this class, e.g. {@code Button.class} or {@code GridView.class}
+     * @return an {@code ArrayList} of the shown {@code View}s of the specified {@code Class} located in the current {@code Activity}
+     */
+
+    public <T extends View> ArrayList<T> getCurrentShownViews(Class<T> classToFilterBy) {
+        return getSnapshot().getViews(classToFilterBy, true, true);
+    }
+
     /**
      * Returns an {@code ArrayList} of the all unique View objects contained in the parent View. Scrolling is required to get all the views.
      * 
@@ -345,12 +578,12 @@ class ViewFetcher {
     public final ArrayList<View> getAllViews(View parent) {
         final ArrayList<View> list = new ArrayList<View>();
         scroller.scrollToTop();
-        sleeper.sleep(Constants.SPIN_WAIT);
+        sleeper.sleep(sleeper.getTimingProfile().getSpinWait());
         try {
             list.addAll(getViews(parent, false));
             while (scroller.scroll(Scroller.DOWN)) {
                 list.addAll(getViews(parent, false));
-                sleeper.sleep(Constants.SPIN_WAIT);
+                sleeper.sleep(sleeper.getTimingProfile().getSpinWait());
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -379,19 +612,17 @@ class ViewFetcher {
      * @param classToFilterBy
      *            the class to filter by
      * @param views
-     *            the list with views
-     * @param index
-     *            the index of the view
-     * @return the view with a given index
+     *            the list with views, or {@code null} for the sufficiently visible and shown views of the current snapshot
+     * @return the most recently drawn view
      */
 
     public final <T extends View> T getView(Class<T> classToFilterBy, ArrayList<T> views) {
+        if (views == null) {
+            return getSnapshot().getMostRecentlyDrawnView(classToFilterBy, true, true);
+        }
         final int[] locationOnScreen = new int[2];
         T viewToReturn = null;
         long drawingTime = 0;
-        if (views == null) {
-            views = RobotiumUtils.removeInvisibleViews(getCurrentViews(classToFilterBy));
-        }
         for (T view : views) {
             view.getLocationOnScreen(locationOnScreen);
             if (locationOnScreen[0] < 0) {
@@ -407,18 +638,6 @@ class ViewFetcher {
         return viewToReturn;
     }
 
-    private static Class<?> windowManager;
-    static {
-        try {
-            windowManager = Class.forName("android.view.WindowManagerImpl");
-
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
-        } catch (SecurityException e) {
-            e.printStackTrace();
-        }
-    }
-
     /**
      * Returns the WindorDecorViews shown on the screen
      * 
@@ -427,35 +646,18 @@ class ViewFetcher {
      */
 
     public View[] getWindowDecorViews() {
-
-        Field viewsField;
-        Field instanceField;
-        try {
-            viewsField = windowManager.getDeclaredField("mViews");
-            instanceField = windowManager.getDeclaredField(windowManagerString);
-            viewsField.setAccessible(true);
-            instanceField.setAccessible(true);
-            Object instance = instanceField.get(null);
-            return (View[]) viewsField.get(instance);
-        } catch (SecurityException e) {
-            e.printStackTrace();
-        } catch (NoSuchFieldException e) {
-            e.printStackTrace();
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        }
-        return null;
+        return windowManagerAccessor.getWindowDecorViews();
     }
 
-    private void setWindowManagerString() {
-
-        if (android.os.Build.VERSION.SDK_INT >= 13)
-            windowManagerString = "sWindowManager";
+    /**
+     * Returns the number of windows shown on the screen. Cheaper than {@link #getWindowDecorViews()} as the window views are not copied.
+     * 
+     * @return the number of windows shown on the screen
+     * 
+     */
 
-        else
-            windowManagerString = "mWindowManager";
+    public int getWindowCount() {
+        return windowManagerAccessor.getWindowCount();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,256 @@
+package com.jayway.android.robotium.solo;
+
+import android.view.View;
+import android.widget.Checkable;
+
+/**
+ * A read-only record of the state of one {@code View}, copied on the UI thread while a {@link ViewSnapshot} was captured. Queries and predicates read
+ * these records from the instrumentation thread, so they neither race with the UI thread nor need to call into the view again. The {@code View} itself is
+ * only kept to act on it, e.g. to click it.
+ *
+ * A record is a cursor into the arrays of its snapshot and holds no state of its own.
+ *
+ */
+
+final class ViewNode {
+
+    private final ViewSnapshot snapshot;
+    private final int index;
+
+    /**
+     * Constructs a record of the view at a traversal index of a snapshot.
+     *
+     * @param snapshot
+     *            the snapshot holding the state of the view
+     * @param index
+     *            the traversal index of the view in {@code snapshot}
+     */
+
+    ViewNode(ViewSnapshot snapshot, int index) {
+        this.snapshot = snapshot;
+        this.index = index;
+    }
+
+    /**
+     * Returns the view this record was copied from. Only to be used to act on the view, its state should be read from this record.
+     *
+     * @return the view
+     */
+
+    public View getView() {
+        return snapshot.getViewAt(index);
+    }
+
+    /**
+     * Returns the class of the view.
+     *
+     * @return the class of the view
+     */
+
+    public Class<?> getViewClass() {
+        return snapshot.getViewClassAt(index);
+    }
+
+    /**
+     * Returns the traversal index of the view in its snapshot.
+     *
+     * @return the traversal index
+     */
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the traversal index of the parent of the view.
+     *
+     * @return the traversal index of the parent, or {@code -1} if the parent is a window root
+     */
+
+    public int getParentIndex() {
+        return snapshot.getParentIndexAt(index);
+    }
+
+    /**
+     * Returns the id of the view.
+     *
+     * @return the id, or {@link View#NO_ID}
+     */
+
+    public int getId() {
+        return snapshot.getIdAt(index);
+    }
+
+    /**
+     * Returns the left edge of the view, in screen coordinates.
+     *
+     * @return the left edge
+     */
+
+    public int getLeft() {
+        return snapshot.getLeftAt(index);
+    }
+
+    /**
+     * Returns the top edge of the view, in screen coordinates.
+     *
+     * @return the top edge
+     */
+
+    public int getTop() {
+        return snapshot.getTopAt(index);
+    }
+
+    /**
+     * Returns the right edge of the view, in screen coordinates.
+     *
+     * @return the right edge
+     */
+
+    public int getRight() {
+        return snapshot.getRightAt(index);
+    }
+
+    /**
+     * Returns the bottom edge of the view, in screen coordinates.
+     *
+     * @return the bottom edge
+     */
+
+    public int getBottom() {
+        return snapshot.getBottomAt(index);
+    }
+
+    /**
+     * Returns the height of the view.
+     *
+     * @return the height
+     */
+
+    public int getHeight() {
+        return snapshot.getBottomAt(index) - snapshot.getTopAt(index);
+    }
+
+    /**
+     * Returns the visibility of the view.
+     *
+     * @return {@link View#VISIBLE}, {@link View#INVISIBLE} or {@link View#GONE}
+     */
+
+    public int getVisibility() {
+        return snapshot.getVisibilityAt(index);
+    }
+
+    /**
+     * Checks if the view and all its ancestors were visible, see {@link View#isShown()}.
+     *
+     * @return {@code true} if the view was shown
+     */
+
+    public boolean isShown() {
+        return snapshot.isShownAt(index);
+    }
+
+    /**
+     * Checks if the view was sufficiently shown inside its scroll or list parent.
+     *
+     * @return {@code true} if the view was sufficiently shown
+     */
+
+    public boolean isSufficientlyShown() {
+        return snapshot.isSufficientlyShownAt(index);
+    }
+
+    /**
+     * Returns the drawing time of the view, see {@link View#getDrawingTime()}.
+     *
+     * @return the drawing time
+     */
+
+    public long getDrawingTime() {
+        return snapshot.getDrawingTimeAt(index);
+    }
+
+    /**
+     * Returns the adapter position of the list row the view is, or is part of.
+     *
+     * @return the adapter position, or {@code -1} if the view is not in a row of an {@code AdapterView}
+     */
+
+    public int getAdapterPosition() {
+        return snapshot.getRowPositionAt(index);
+    }
+
+    /**
+     * Returns the {@code AdapterView} whose row the view is, or is part of.
+     *
+     * @return the list, or {@code null} if the view is not in a row of an {@code AdapterView}
+     */
+
+    public View getAdapterView() {
+        final int rowIndex = snapshot.getRowIndexAt(index);
+        return rowIndex >= 0 ? snapshot.getViewAt(snapshot.getParentIndexAt(rowIndex)) : null;
+    }
+
+    /**
+     * Returns the offset of the view in traversal order from the list row it is part of. Rows with the same layout give their corresponding views the
+     * same offset.
+     *
+     * @return the offset, {@code 0} for the row itself, or {@code -1} if the view is not in a row of an {@code AdapterView}
+     */
+
+    public int getOffsetInRow() {
+        final int rowIndex = snapshot.getRowIndexAt(index);
+        return rowIndex >= 0 ? index - rowIndex : -1;
+    }
+
+    /**
+     * Returns the text of the view.
+     *
+     * @return the text, or {@code null} if the view is not a {@code TextView}
+     */
+
+    public String getText() {
+        return snapshot.getTextAt(index);
+    }
+
+    /**
+     * Returns the error of the view.
+     *
+     * @return the error, or {@code null} if the view is not a {@code TextView} or has no error
+     */
+
+    public String getError() {
+        return snapshot.getErrorAt(index);
+    }
+
+    /**
+     * Returns the hint of the view.
+     *
+     * @return the hint, or {@code null} if the view is not a {@code TextView} or has no hint
+     */
+
+    public String getHint() {
+        return snapshot.getHintAt(index);
+    }
+
+    /**
+     * Checks if the view can be checked, see {@link Checkable}.
+     *
+     * @return {@code true} if the view is {@code Checkable}
+     */
+
+    public boolean isCheckable() {
+        return snapshot.isCheckableAt(index);
+    }
+
+    /**
+     * Checks if the view was checked.
+     *
+     * @return {@code true} if the view is {@code Checkable} and was checked
+     */
+
+    public boolean isChecked() {
+        return snapshot.isCheckedAt(index);
+    }
+}
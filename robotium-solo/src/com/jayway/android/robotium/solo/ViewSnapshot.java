@@ -0,0 +1,673 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.AdapterView;
+import android.widget.Checkable;
+import android.widget.TextView;
+
+/**
+ * An indexed snapshot of the view hierarchy, captured in a single traversal on the UI thread by {@link ViewFetcher}. The state of every view is copied
+ * into parallel primitive arrays indexed by traversal order: ids, screen bounds, visibility and state flags, parent indices, drawing times, texts, the adapter
+ * position of the list row a view belongs to and an index into an interned class table. Class, id, visibility and bounds queries are tight loops over these arrays; they neither re-walk the tree nor read
+ * the live views from the instrumentation thread. The views themselves are only kept to act on them.
+ *
+ * A snapshot is not modified once it has been built and may be shared between callers until the UI changes. A {@link ViewNode} is a light-weight
+ * read-only cursor into it.
+ *
+ */
+
+class ViewSnapshot implements ViewVisitor {
+
+    private static final byte SHOWN = 1;
+    private static final byte SUFFICIENTLY_SHOWN = 2;
+    private static final byte CHECKABLE = 4;
+    private static final byte CHECKED = 8;
+
+    private int size;
+    private View[] views;
+    private int[] classIndices;
+    private int[] ids;
+    private int[] lefts;
+    private int[] tops;
+    private int[] rights;
+    private int[] bottoms;
+    private byte[] visibilities;
+    private byte[] flags;
+    private int[] parentIndices;
+    private int[] rowIndices;
+    private int[] rowPositions;
+    private long[] drawingTimes;
+    private String[] texts;
+    private String[] errors;
+    private String[] hints;
+
+    private Class<?>[] classes = new Class<?>[16];
+    private IndexList[] classBuckets = new IndexList[16];
+    private int classCount;
+    private final HashMap<Class<?>, Integer> classTable = new HashMap<Class<?>, Integer>();
+    private final HashMap<Class<?>, int[]> filteredIndices = new HashMap<Class<?>, int[]>();
+
+    private final int[] xy = new int[2];
+    private View[] parents = new View[32];
+    private int[] openIndices = new int[32];
+    private int[] childCounts = new int[32];
+    private float[] windowTops = new float[32];
+    private float[] windowBottoms = new float[32];
+    private int depth;
+
+    /**
+     * Constructs an empty snapshot.
+     *
+     * @param expectedSize
+     *            the expected number of views
+     */
+
+    ViewSnapshot(int expectedSize) {
+        allocate(Math.max(expectedSize, 16));
+    }
+
+    /**
+     * Starts adding the children of a window root view. Must be called on the UI thread before the root is traversed with this snapshot as visitor and
+     * with {@code computeVisibility} set to {@code false}, as the snapshot computes the visibility from the bounds it records.
+     *
+     * @param root
+     *            the window root view
+     * @param displayHeight
+     *            the height of the display, the visible window of views without a scroll or list parent
+     */
+
+    void beginWindow(View root, float displayHeight) {
+        depth = 0;
+        if (ViewTraverser.isScrollOrList(root)) {
+            root.getLocationOnScreen(xy);
+            push(root, -1, xy[1], xy[1] + root.getHeight());
+        } else {
+            push(root, -1, 0, displayHeight);
+        }
+    }
+
+    /**
+     * Ends adding the children of a window root view and releases the references kept while building.
+     */
+
+    void endWindow() {
+        while (depth > 0) {
+            parents[--depth] = null;
+        }
+    }
+
+    /**
+     * Copies the state of a view into the snapshot. The parent of the view is found on the stack of open ancestors, which also holds the visible window of
+     * the closest scroll or list ancestor, so the visibility check is O(1) per view. A child of an {@code AdapterView} is a row, its adapter position is the
+     * first visible position of the list plus the number of rows added before it; the descendants of a row inherit its position.
+     *
+     * @param view
+     *            the view to add
+     */
+
+    private void add(View view) {
+        final ViewParent parent = view.getParent();
+        while (depth > 1 && parents[depth - 1] != parent) {
+            parents[--depth] = null;
+        }
+        final int top = depth - 1;
+        final int parentIndex = openIndices[top];
+        final int childOrdinal = childCounts[top]++;
+        float windowTop = windowTops[top];
+        float windowBottom = windowBottoms[top];
+
+        view.getLocationOnScreen(xy);
+        final int height = view.getHeight();
+        if (ViewTraverser.isScrollOrList(view)) {
+            windowTop = xy[1];
+            windowBottom = xy[1] + height;
+        }
+        final float viewCenter = xy[1] + (height / 2.0f);
+
+        if (size == views.length) {
+            allocate(size * 2);
+        }
+        final int index = size++;
+        byte viewFlags = 0;
+
+        if (view.isShown()) {
+            viewFlags |= SHOWN;
+        }
+        if (viewCenter <= windowBottom && viewCenter >= windowTop) {
+            viewFlags |= SUFFICIENTLY_SHOWN;
+        }
+        if (view instanceof Checkable) {
+            viewFlags |= CHECKABLE;
+            if (((Checkable) view).isChecked()) {
+                viewFlags |= CHECKED;
+            }
+        }
+        if (view instanceof TextView) {
+            final TextView textView = (TextView) view;
+            texts[index] = toString(textView.getText(), "");
+            errors[index] = toString(textView.getError(), null);
+            hints[index] = toString(textView.getHint(), null);
+        }
+
+        views[index] = view;
+        classIndices[index] = internClass(view.getClass(), index);
+        ids[index] = view.getId();
+        lefts[index] = xy[0];
+        tops[index] = xy[1];
+        rights[index] = xy[0] + view.getWidth();
+        bottoms[index] = xy[1] + height;
+        visibilities[index] = (byte) view.getVisibility();
+        flags[index] = viewFlags;
+        parentIndices[index] = parentIndex;
+        drawingTimes[index] = view.getDrawingTime();
+
+        if (parentIndex >= 0 && parents[top] instanceof AdapterView<?>) {
+            rowIndices[index] = index;
+            rowPositions[index] = ((AdapterView<?>) parents[top]).getFirstVisiblePosition() + childOrdinal;
+        } else if (parentIndex >= 0) {
+            rowIndices[index] = rowIndices[parentIndex];
+            rowPositions[index] = rowPositions[parentIndex];
+        } else {
+            rowIndices[index] = -1;
+            rowPositions[index] = -1;
+        }
+
+        if (view instanceof ViewGroup) {
+            push(view, index, windowTop, windowBottom);
+        }
+    }
+
+    /**
+     * Adds every visited view to the snapshot. Only used by {@link ViewTraverser} while the snapshot is being built, see
+     * {@link #beginWindow(View, float)}.
+     *
+     * @param view
+     *            the view to add
+     * @param sufficientlyShown
+     *            ignored, the snapshot computes it from the recorded bounds
+     * @return always {@link ViewVisitor.Result#CONTINUE}
+     */
+
+    public Result visit(View view, boolean sufficientlyShown) {
+        add(view);
+        return Result.CONTINUE;
+    }
+
+    /**
+     * Returns the number of views in this snapshot.
+     *
+     * @return the number of views
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns all views of this snapshot in traversal order.
+     *
+     * @param onlySufficientlyVisible
+     *            if only sufficiently visible views should be returned
+     * @return a new {@code ArrayList} with the views
+     */
+
+    public ArrayList<View> getViews(boolean onlySufficientlyVisible) {
+        final ArrayList<View> result = new ArrayList<View>(size);
+        for (int i = 0; i < size; i++) {
+            if (!onlySufficientlyVisible || (flags[i] & SUFFICIENTLY_SHOWN) != 0) {
+                result.add(views[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the views that are instances of the given class, in traversal order.
+     *
+     * @param classToFilterBy
+     *            the class to filter by
+     * @param onlySufficientlyVisible
+     *            if only sufficiently visible views should be returned
+     * @param onlyShown
+     *            if only views that are shown, see {@link View#isShown()}, should be returned
+     * @return a new {@code ArrayList} with the matching views
+     */
+
+    public <T extends View> ArrayList<T> getViews(Class<T> classToFilterBy, boolean onlySufficientlyVisible, boolean onlyShown) {
+        final int[] indices = getIndicesOfClass(classToFilterBy);
+        final byte required = requiredFlags(onlySufficientlyVisible, onlyShown);
+        final ArrayList<T> result = new ArrayList<T>(indices.length);
+        for (int index : indices) {
+            if ((flags[index] & required) == required) {
+                result.add(classToFilterBy.cast(views[index]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the records of the views that are instances of the given class, in traversal order.
+     *
+     * @param classToFilterBy
+     *            the class to filter by
+     * @param onlySufficientlyVisible
+     *            if only records of sufficiently visible views should be returned
+     * @param onlyShown
+     *            if only records of views that are shown, see {@link View#isShown()}, should be returned
+     * @return a new {@code ArrayList} with the matching records
+     */
+
+    public ArrayList<ViewNode> getNodes(Class<? extends View> classToFilterBy, boolean onlySufficientlyVisible, boolean onlyShown) {
+        final int[] indices = getIndicesOfClass(classToFilterBy);
+        final byte required = requiredFlags(onlySufficientlyVisible, onlyShown);
+        final ArrayList<ViewNode> result = new ArrayList<ViewNode>(indices.length);
+        for (int index : indices) {
+            if ((flags[index] & required) == required) {
+                result.add(new ViewNode(this, index));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if there is a view that is an instance of the given class.
+     *
+     * @param classToFilterBy
+     *            the class to filter by
+     * @param onlySufficientlyVisible
+     *            if the view has to be sufficiently visible
+     * @param onlyShown
+     *            if the view has to be shown, see {@link View#isShown()}
+     * @return {@code true} if there is a matching view
+     */
+
+    public boolean hasViews(Class<? extends View> classToFilterBy, boolean onlySufficientlyVisible, boolean onlyShown) {
+        final byte required = requiredFlags(onlySufficientlyVisible, onlyShown);
+        for (int index : getIndicesOfClass(classToFilterBy)) {
+            if ((flags[index] & required) == required) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the most recently drawn view that is an instance of the given class, has a height and does not start left of the screen. Equivalent to
+     * {@link ViewFetcher#getView(Class, ArrayList)}, but reads the recorded bounds and drawing times instead of querying each candidate view.
+     *
+     * @param classToFilterBy
+     *            the class to filter by
+     * @param onlySufficientlyVisible
+     *            if only sufficiently visible views should be considered
+     * @param onlyShown
+     *            if only views that are shown, see {@link View#isShown()}, should be considered
+     * @return the most recently drawn matching view, or {@code null} if there is none
+     */
+
+    public <T extends View> T getMostRecentlyDrawnView(Class<T> classToFilterBy, boolean onlySufficientlyVisible, boolean onlyShown) {
+        final byte required = requiredFlags(onlySufficientlyVisible, onlyShown);
+        int found = -1;
+        long drawingTime = 0;
+        for (int index : getIndicesOfClass(classToFilterBy)) {
+            if ((flags[index] & required) != required || lefts[index] < 0) {
+                continue;
+            }
+            if (drawingTimes[index] > drawingTime && bottoms[index] > tops[index]) {
+                drawingTime = drawingTimes[index];
+                found = index;
+            }
+        }
+        return found != -1 ? classToFilterBy.cast(views[found]) : null;
+    }
+
+    /**
+     * Returns the record of the first child of a view.
+     *
+     * @param node
+     *            the record of the view
+     * @return the record of the first child, or {@code null} if the view has no children
+     */
+
+    public ViewNode getFirstChild(ViewNode node) {
+        final int childIndex = node.getIndex() + 1;
+        if (childIndex < size && parentIndices[childIndex] == node.getIndex()) {
+            return new ViewNode(this, childIndex);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the first view with the given id, in traversal order.
+     *
+     * @param id
+     *            the id of the view
+     * @return the view or {@code null} if no view has the given id
+     */
+
+    public View getView(int id) {
+        if (id == View.NO_ID) {
+            return null;
+        }
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return views[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the given view is part of this snapshot.
+     *
+     * @param view
+     *            the view to look for
+     * @param onlySufficientlyVisible
+     *            if the view has to be sufficiently visible
+     * @return {@code true} if the view is part of this snapshot
+     */
+
+    public boolean contains(View view, boolean onlySufficientlyVisible) {
+        if (view == null) {
+            return false;
+        }
+        final Integer classIndex = classTable.get(view.getClass());
+        if (classIndex == null) {
+            return false;
+        }
+        final IndexList bucket = classBuckets[classIndex];
+        for (int i = 0; i < bucket.size; i++) {
+            final int index = bucket.indices[i];
+            if (views[index] == view) {
+                return !onlySufficientlyVisible || (flags[index] & SUFFICIENTLY_SHOWN) != 0;
+            }
+        }
+        return false;
+    }
+
+    // Per-view accessors, read through ViewNode
+
+    View getViewAt(int index) {
+        return views[index];
+    }
+
+    Class<?> getViewClassAt(int index) {
+        return classes[classIndices[index]];
+    }
+
+    int getParentIndexAt(int index) {
+        return parentIndices[index];
+    }
+
+    int getIdAt(int index) {
+        return ids[index];
+    }
+
+    int getLeftAt(int index) {
+        return lefts[index];
+    }
+
+    int getTopAt(int index) {
+        return tops[index];
+    }
+
+    int getRightAt(int index) {
+        return rights[index];
+    }
+
+    int getBottomAt(int index) {
+        return bottoms[index];
+    }
+
+    int getVisibilityAt(int index) {
+        return visibilities[index];
+    }
+
+    boolean isShownAt(int index) {
+        return (flags[index] & SHOWN) != 0;
+    }
+
+    boolean isSufficientlyShownAt(int index) {
+        return (flags[index] & SUFFICIENTLY_SHOWN) != 0;
+    }
+
+    boolean isCheckableAt(int index) {
+        return (flags[index] & CHECKABLE) != 0;
+    }
+
+    boolean isCheckedAt(int index) {
+        return (flags[index] & CHECKED) != 0;
+    }
+
+    int getRowIndexAt(int index) {
+        return rowIndices[index];
+    }
+
+    int getRowPositionAt(int index) {
+        return rowPositions[index];
+    }
+
+    long getDrawingTimeAt(int index) {
+        return drawingTimes[index];
+    }
+
+    String getTextAt(int index) {
+        return texts[index];
+    }
+
+    String getErrorAt(int index) {
+        return errors[index];
+    }
+
+    String getHintAt(int index) {
+        return hints[index];
+    }
+
+    /**
+     * Returns the flags a view must have to pass the visibility filters.
+     *
+     * @param onlySufficientlyVisible
+     *            if the view has to be sufficiently visible
+     * @param onlyShown
+     *            if the view has to be shown
+     * @return the required flags
+     */
+
+    private static byte requiredFlags(boolean onlySufficientlyVisible, boolean onlyShown) {
+        byte required = 0;
+        if (onlySufficientlyVisible) {
+            required |= SUFFICIENTLY_SHOWN;
+        }
+        if (onlyShown) {
+            required |= SHOWN;
+        }
+        return required;
+    }
+
+    /**
+     * Returns the index of a class in the class table, adding it if needed, and adds a view to the bucket of the class.
+     *
+     * @param viewClass
+     *            the class of the view
+     * @param index
+     *            the traversal index of the view
+     * @return the index of the class in the class table
+     */
+
+    private int internClass(Class<?> viewClass, int index) {
+        final Integer known = classTable.get(viewClass);
+        final int classIndex;
+        if (known != null) {
+            classIndex = known;
+        } else {
+            if (classCount == classes.length) {
+                final Class<?>[] grownClasses = new Class<?>[classCount * 2];
+                final IndexList[] grownBuckets = new IndexList[classCount * 2];
+                System.arraycopy(classes, 0, grownClasses, 0, classCount);
+                System.arraycopy(classBuckets, 0, grownBuckets, 0, classCount);
+                classes = grownClasses;
+                classBuckets = grownBuckets;
+            }
+            classIndex = classCount++;
+            classes[classIndex] = viewClass;
+            classBuckets[classIndex] = new IndexList();
+            classTable.put(viewClass, classIndex);
+        }
+        classBuckets[classIndex].add(index);
+        return classIndex;
+    }
+
+    /**
+     * Returns the memoized traversal indices of all views that are instances of the given class, merged from the class buckets.
+     *
+     * @param classToFilterBy
+     *            the class to filter by
+     * @return the sorted traversal indices, which must not be modified
+     */
+
+    private synchronized int[] getIndicesOfClass(Class<?> classToFilterBy) {
+        int[] indices = filteredIndices.get(classToFilterBy);
+        if (indices != null) {
+            return indices;
+        }
+        int count = 0;
+        for (int i = 0; i < classCount; i++) {
+            if (classToFilterBy.isAssignableFrom(classes[i])) {
+                count += classBuckets[i].size;
+            }
+        }
+        indices = new int[count];
+        int offset = 0;
+        for (int i = 0; i < classCount; i++) {
+            if (classToFilterBy.isAssignableFrom(classes[i])) {
+                final IndexList bucket = classBuckets[i];
+                System.arraycopy(bucket.indices, 0, indices, offset, bucket.size);
+                offset += bucket.size;
+            }
+        }
+        Arrays.sort(indices);
+        filteredIndices.put(classToFilterBy, indices);
+        return indices;
+    }
+
+    /**
+     * Allocates the per-view arrays with the given capacity, keeping the views added so far.
+     *
+     * @param capacity
+     *            the new capacity
+     */
+
+    private void allocate(int capacity) {
+        views = copy(views, new View[capacity]);
+        classIndices = copy(classIndices, new int[capacity]);
+        ids = copy(ids, new int[capacity]);
+        lefts = copy(lefts, new int[capacity]);
+        tops = copy(tops, new int[capacity]);
+        rights = copy(rights, new int[capacity]);
+        bottoms = copy(bottoms, new int[capacity]);
+        visibilities = copy(visibilities, new byte[capacity]);
+        flags = copy(flags, new byte[capacity]);
+        parentIndices = copy(parentIndices, new int[capacity]);
+        rowIndices = copy(rowIndices, new int[capacity]);
+        rowPositions = copy(rowPositions, new int[capacity]);
+        drawingTimes = copy(drawingTimes, new long[capacity]);
+        texts = copy(texts, new String[capacity]);
+        errors = copy(errors, new String[capacity]);
+        hints = copy(hints, new String[capacity]);
+    }
+
+    /**
+     * Copies the views added so far from one array into another.
+     *
+     * @param source
+     *            the array to copy from, or {@code null}
+     * @param target
+     *            the array to copy into
+     * @return {@code target}
+     */
+
+    private <A> A copy(A source, A target) {
+        if (source != null) {
+            System.arraycopy(source, 0, target, 0, size);
+        }
+        return target;
+    }
+
+    /**
+     * Pushes an open ancestor onto the build stack, growing the stack when needed.
+     *
+     * @param view
+     *            the ancestor
+     * @param index
+     *            the traversal index of the ancestor, or {@code -1} for a window root
+     * @param windowTop
+     *            the top of the visible window of the scroll or list parent of the children of {@code view}
+     * @param windowBottom
+     *            the bottom of the visible window of the scroll or list parent of the children of {@code view}
+     */
+
+    private void push(View view, int index, float windowTop, float windowBottom) {
+        if (depth == parents.length) {
+            final int length = depth * 2;
+            final View[] grownParents = new View[length];
+            final int[] grownIndices = new int[length];
+            final int[] grownCounts = new int[length];
+            final float[] grownTops = new float[length];
+            final float[] grownBottoms = new float[length];
+            System.arraycopy(parents, 0, grownParents, 0, depth);
+            System.arraycopy(openIndices, 0, grownIndices, 0, depth);
+            System.arraycopy(childCounts, 0, grownCounts, 0, depth);
+            System.arraycopy(windowTops, 0, grownTops, 0, depth);
+            System.arraycopy(windowBottoms, 0, grownBottoms, 0, depth);
+            parents = grownParents;
+            openIndices = grownIndices;
+            childCounts = grownCounts;
+            windowTops = grownTops;
+            windowBottoms = grownBottoms;
+        }
+        parents[depth] = view;
+        openIndices[depth] = index;
+        childCounts[depth] = 0;
+        windowTops[depth] = windowTop;
+        windowBottoms[depth] = windowBottom;
+        depth++;
+    }
+
+    /**
+     * Converts a {@code CharSequence} into an immutable {@code String}.
+     *
+     * @param sequence
+     *            the sequence to convert
+     * @param defaultValue
+     *            the value to return if {@code sequence} is {@code null}
+     * @return the converted sequence
+     */
+
+    private static String toString(CharSequence sequence, String defaultValue) {
+        return sequence != null ? sequence.toString() : defaultValue;
+    }
+
+    /**
+     * A growable list of primitive traversal indices.
+     *
+     */
+
+    private static final class IndexList {
+        int[] indices = new int[8];
+        int size;
+
+        void add(int index) {
+            if (size == indices.length) {
+                final int[] grown = new int[size * 2];
+                System.arraycopy(indices, 0, grown, 0, size);
+                indices = grown;
+            }
+            indices[size++] = index;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Walks view hierarchies iteratively. The traversal stack and the coordinate buffer used for the visibility check are reused between walks, so a walk
+ * does not allocate once the stack has grown to the depth of the deepest layout.
+ * 
+ * The visible window of the closest scroll or list ancestor is computed once per {@code ViewGroup}, top-down, and kept on the stack next to it. Checking
+ * whether a view is sufficiently shown is therefore O(1) per view instead of a walk up to the root.
+ *
+ */
+
+class ViewTraverser {
+
+    private final ViewFetcher viewFetcher;
+    private final int[] xy = new int[2];
+    private ViewGroup[] groups = new ViewGroup[32];
+    private int[] nextChild = new int[32];
+    private float[] windowTops = new float[32];
+    private float[] windowBottoms = new float[32];
+
+    /**
+     * Constructs this object.
+     *
+     * @param viewFetcher
+     *            the {@code ViewFetcher} instance, used to resolve the scroll or list parent of the traversal root
+     */
+
+    public ViewTraverser(ViewFetcher viewFetcher) {
+        this.viewFetcher = viewFetcher;
+    }
+
+    /**
+     * Visits all children of {@code root} (recursively, in pre-order) with {@code visitor}.
+     *
+     * @param root
+     *            the {@code ViewGroup} whose children should be visited
+     * @param visitor
+     *            the {@code ViewVisitor} to visit the views with
+     * @param computeVisibility
+     *            {@code true} if it should be computed whether each view is sufficiently shown
+     * @return {@code true} if the visitor stopped the traversal
+     *
+     */
+
+    public synchronized boolean traverse(ViewGroup root, ViewVisitor visitor, boolean computeVisibility) {
+        int depth = 0;
+        if (computeVisibility) {
+            setRootWindow(root);
+        }
+        push(depth++, root, windowTops[0], windowBottoms[0]);
+        try {
+            while (depth > 0) {
+                final int top = depth - 1;
+                final ViewGroup group = groups[top];
+                final int index = nextChild[top];
+
+                if (index >= group.getChildCount()) {
+                    groups[--depth] = null;
+                    continue;
+                }
+                nextChild[top] = index + 1;
+
+                final View child = group.getChildAt(index);
+                if (child == null) {
+                    continue;
+                }
+
+                float childWindowTop = windowTops[top];
+                float childWindowBottom = windowBottoms[top];
+                boolean sufficientlyShown = false;
+
+                if (computeVisibility) {
+                    child.getLocationOnScreen(xy);
+                    if (isScrollOrList(child)) {
+                        childWindowTop = xy[1];
+                        childWindowBottom = xy[1] + child.getHeight();
+                    }
+                    final float viewCenter = xy[1] + (child.getHeight() / 2.0f);
+                    sufficientlyShown = viewCenter <= childWindowBottom && viewCenter >= childWindowTop;
+                }
+                final ViewVisitor.Result result = visitor.visit(child, sufficientlyShown);
+
+                if (result == ViewVisitor.Result.STOP) {
+                    return true;
+                }
+
+                if (result == ViewVisitor.Result.CONTINUE && child instanceof ViewGroup) {
+                    push(depth++, (ViewGroup) child, childWindowTop, childWindowBottom);
+                }
+            }
+        } finally {
+            while (depth > 0) {
+                groups[--depth] = null;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds all children of {@code root} (recursively, in pre-order) into {@code views}.
+     *
+     * @param root
+     *            the {@code ViewGroup} to extract children from
+     * @param views
+     *            an {@code ArrayList} of {@code View}s
+     * @param onlySufficientlyVisible
+     *            if only sufficiently visible views should be added
+     *
+     */
+
+    public void traverse(ViewGroup root, final ArrayList<View> views, final boolean onlySufficientlyVisible) {
+        traverse(root, new ViewVisitor() {
+            public Result visit(View view, boolean sufficientlyShown) {
+                if (!onlySufficientlyVisible || sufficientlyShown) {
+                    views.add(view);
+                }
+                return Result.CONTINUE;
+            }
+        }, onlySufficientlyVisible);
+    }
+
+    /**
+     * Pushes a {@code ViewGroup} onto the traversal stack, growing the stack when needed.
+     *
+     * @param depth
+     *            the stack position
+     * @param group
+     *            the {@code ViewGroup} to push
+     * @param windowTop
+     *            the top of the visible window of the scroll or list parent of the children of {@code group}
+     * @param windowBottom
+     *            the bottom of the visible window of the scroll or list parent of the children of {@code group}
+     */
+
+    private void push(int depth, ViewGroup group, float windowTop, float windowBottom) {
+        if (depth == groups.length) {
+            groups = grow(groups);
+            nextChild = grow(nextChild);
+            windowTops = grow(windowTops);
+            windowBottoms = grow(windowBottoms);
+        }
+        groups[depth] = group;
+        nextChild[depth] = 0;
+        windowTops[depth] = windowTop;
+        windowBottoms[depth] = windowBottom;
+    }
+
+    /**
+     * Computes the visible window of the scroll or list parent of the traversal root. It is the only window that needs a walk up the hierarchy, all others
+     * are derived top-down. Without a scroll or list parent the window is the whole display, see {@link ViewFetcher#getScrollListWindowHeight(View)}.
+     *
+     * @param root
+     *            the traversal root
+     */
+
+    private void setRootWindow(ViewGroup root) {
+        final View parent = viewFetcher.getScrollOrListParent(root);
+        if (parent == null) {
+            windowTops[0] = 0;
+            windowBottoms[0] = viewFetcher.getDisplayHeight();
+        } else {
+            parent.getLocationOnScreen(xy);
+            windowTops[0] = xy[1];
+            windowBottoms[0] = xy[1] + parent.getHeight();
+        }
+    }
+
+    /**
+     * Checks if a view is a scroll or list view, see {@link ViewFetcher#getScrollOrListParent(View)}.
+     *
+     * @param view
+     *            the view to check
+     * @return {@code true} if the view is a scroll or list view
+     */
+
+    static boolean isScrollOrList(View view) {
+        return view instanceof android.widget.AbsListView || view instanceof android.widget.ScrollView;
+    }
+
+    /**
+     * Returns a copy of the given array with twice its length.
+     */
+
+    private static ViewGroup[] grow(ViewGroup[] array) {
+        final ViewGroup[] grown = new ViewGroup[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    /**
+     * Returns a copy of the given array with twice its length.
+     */
+
+    private static int[] grow(int[] array) {
+        final int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    /**
+     * Returns a copy of the given array with twice its length.
+     */
+
+    private static float[] grow(float[] array) {
+        final float[] grown = new float[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
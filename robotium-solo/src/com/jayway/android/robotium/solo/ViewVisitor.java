@@ -0,0 +1,38 @@
+package com.jayway.android.robotium.solo;
+
+import android.view.View;
+
+/**
+ * Visits the views of a traversal started with {@link ViewFetcher#visit(ViewVisitor, boolean)}, in pre-order. The returned {@link Result} decides how the
+ * traversal continues, so first-match queries can end as soon as the target is found and irrelevant subtrees can be pruned.
+ *
+ */
+
+interface ViewVisitor {
+
+    /**
+     * How a traversal continues after a view has been visited.
+     *
+     */
+
+    enum Result {
+        /** Continue with the children of the view, then its siblings. */
+        CONTINUE,
+        /** Continue with the siblings of the view, skipping its children. */
+        SKIP_SUBTREE,
+        /** End the traversal. */
+        STOP
+    }
+
+    /**
+     * Called once for every visited view.
+     *
+     * @param view
+     *            the view
+     * @param sufficientlyShown
+     *            {@code true} if the view is sufficiently shown, always {@code false} if visibility is not computed
+     * @return how the traversal should continue
+     */
+
+    Result visit(View view, boolean sufficientlyShown);
+}
@@ -0,0 +1,88 @@
+package com.jayway.android.robotium.solo;
+
+/**
+ * A {@link Clock} whose time only moves when it is advanced. Sleeps and waits return at once and advance the time by their length, so a wait that times
+ * out after 20 seconds of virtual time takes as long as its checks take. A wait on a monitor returns as if timed out, without waiting for a notification.
+ *
+ * Example:
+ *
+ * <pre>
+ * VirtualClock clock = new VirtualClock();
+ * Solo solo = new Solo(getInstrumentation(), getActivity(), null, clock);
+ * assertFalse(solo.waitForText(&quot;Never shown&quot;, 1, 20000));
+ * assertTrue(clock.uptimeMillis() &gt;= 20000);
+ * </pre>
+ *
+ */
+
+public class VirtualClock extends Clock {
+
+    private long now;
+    private long sleepCount;
+
+    /**
+     * Constructs a clock starting at time {@code 0}.
+     */
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * Constructs a clock.
+     *
+     * @param start
+     *            the start time in milliseconds
+     */
+
+    public VirtualClock(long start) {
+        this.now = start;
+    }
+
+    @Override
+    public synchronized long uptimeMillis() {
+        return now;
+    }
+
+    /**
+     * Advances the time.
+     *
+     * @param millis
+     *            the time to advance by in milliseconds
+     */
+
+    public synchronized void advance(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Time cannot go back: " + millis);
+        }
+        now += millis;
+    }
+
+    /**
+     * Returns the number of sleeps and waits since this clock was constructed.
+     *
+     * @return the number of sleeps and waits
+     */
+
+    public synchronized long getSleepCount() {
+        return sleepCount;
+    }
+
+    @Override
+    public synchronized void sleep(long millis) {
+        sleepCount++;
+        if (millis > 0) {
+            now += millis;
+        }
+    }
+
+    @Override
+    public void await(Object lock, long millis) {
+        sleep(millis);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "VirtualClock[" + now + " ms]";
+    }
+}
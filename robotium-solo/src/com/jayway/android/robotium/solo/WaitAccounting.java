@@ -0,0 +1,278 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accounts for the time {@link Solo} spends sleeping and waiting, and for the checks and view traversals it makes while doing so. Every record is
+ * attributed to the outermost {@code Solo} method on the stack of the recording thread, e.g. a poll of the wait inside {@code clickOnText} counts for
+ * {@code clickOnText}. Finding that method walks the stack, so the accounting is off until {@link #setEnabled(boolean)} turns it on, and a
+ * polling wait walks the stack once when it starts, not for every check.
+ *
+ * The records are kept per test, from {@link #startTest(String)} on, and cumulative for the lifetime of the {@code Solo} instance.
+ *
+ * Example:
+ *
+ * <pre>
+ * protected void setUp() throws Exception {
+ *     solo = new Solo(getInstrumentation(), getActivity());
+ *     solo.getWaitAccounting().setEnabled(true);
+ *     solo.getWaitAccounting().startTest(getName());
+ * }
+ *
+ * protected void tearDown() throws Exception {
+ *     Log.i(&quot;Timing&quot;, solo.getWaitAccounting().getTestSummary());
+ *     solo.finishOpenedActivities();
+ * }
+ * </pre>
+ *
+ */
+
+public final class WaitAccounting {
+
+    private static final String SOLO_CLASS = Solo.class.getName();
+    private static final String OTHER = "(outside Solo)";
+    private static final int SLEPT = 0;
+    private static final int SLEEPS = 1;
+    private static final int WAITED = 2;
+    private static final int POLLS = 3;
+    private static final int TRAVERSALS = 4;
+    private static final int FIELDS = 5;
+
+    private final Map<String, long[]> testRecords = new LinkedHashMap<String, long[]>();
+    private final Map<String, long[]> cumulativeRecords = new LinkedHashMap<String, long[]>();
+    private final ThreadLocal<String> waitingMethod = new ThreadLocal<String>();
+    private volatile boolean enabled;
+    private String testName;
+
+    WaitAccounting() {
+    }
+
+    /**
+     * Turns the accounting on or off. Each record outside a polling wait, and each polling wait, walks the stack of the recording
+     * thread to find the {@code Solo} method it belongs to. Off by default.
+     *
+     * @param enabled
+     *            {@code true} to record
+     */
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Checks if the accounting is on.
+     *
+     * @return {@code true} if sleeps, waits, polls and traversals are recorded
+     */
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts the records of a new test. The records of the previous test are dropped; the cumulative records are kept.
+     *
+     * @param name
+     *            the name of the test, e.g. {@code getName()} of the test case
+     */
+
+    public synchronized void startTest(String name) {
+        testName = name;
+        testRecords.clear();
+    }
+
+    /**
+     * Returns the records of the current test, one line per {@code Solo} method, the most time consuming first.
+     *
+     * @return the summary
+     */
+
+    public synchronized String getTestSummary() {
+        return describe(testName != null ? "Test " + testName : "Test", testRecords);
+    }
+
+    /**
+     * Returns the cumulative records, one line per {@code Solo} method, the most time consuming first.
+     *
+     * @return the report
+     */
+
+    public synchronized String getCumulativeReport() {
+        return describe("Cumulative", cumulativeRecords);
+    }
+
+    /**
+     * Drops all records, of the current test and cumulative.
+     */
+
+    public synchronized void reset() {
+        testRecords.clear();
+        cumulativeRecords.clear();
+    }
+
+    /**
+     * Records a fixed sleep.
+     *
+     * @param millis
+     *            the time slept in milliseconds
+     */
+
+    void recordSleep(long millis) {
+        if (enabled) {
+            add(SLEPT, millis, SLEEPS);
+        }
+    }
+
+    /**
+     * Records time spent waiting for the UI to change or to be idle.
+     *
+     * @param millis
+     *            the time waited in milliseconds
+     */
+
+    void recordWait(long millis) {
+        if (enabled) {
+            add(WAITED, millis, -1);
+        }
+    }
+
+    /**
+     * Records a check of a wait loop that was not satisfied.
+     */
+
+    void recordPoll() {
+        if (enabled) {
+            add(POLLS, 1, -1);
+        }
+    }
+
+    /**
+     * Records a traversal of the view hierarchy.
+     */
+
+    void recordTraversal() {
+        if (enabled) {
+            add(TRAVERSALS, 1, -1);
+        }
+    }
+
+    /**
+     * Starts a polling wait of the calling thread. The records of the thread are attributed to the {@code Solo} method found now until
+     * {@link #endWait(boolean)}, so the checks of the wait do not walk the stack.
+     *
+     * @return {@code true} if this call started the attribution and has to end it, {@code false} if accounting is off or the thread is already
+     *         in a wait
+     */
+
+    boolean startWait() {
+        if (!enabled || waitingMethod.get() != null) {
+            return false;
+        }
+        waitingMethod.set(getSoloMethod());
+        return true;
+    }
+
+    /**
+     * Ends a polling wait of the calling thread.
+     *
+     * @param started
+     *            the value returned by {@link #startWait()}
+     */
+
+    void endWait(boolean started) {
+        if (started) {
+            waitingMethod.remove();
+        }
+    }
+
+    /**
+     * Adds to a field of the records of the calling {@code Solo} method.
+     *
+     * @param field
+     *            the field to add to
+     * @param amount
+     *            the amount to add
+     * @param countField
+     *            a field to increase by one, or {@code -1}
+     */
+
+    private void add(int field, long amount, int countField) {
+        final String waiting = waitingMethod.get();
+        final String method = waiting != null ? waiting : getSoloMethod();
+        synchronized (this) {
+            add(testRecords, method, field, amount, countField);
+            add(cumulativeRecords, method, field, amount, countField);
+        }
+    }
+
+    private static void add(Map<String, long[]> records, String method, int field, long amount, int countField) {
+        long[] record = records.get(method);
+        if (record == null) {
+            record = new long[FIELDS];
+            records.put(method, record);
+        }
+        record[field] += amount;
+        if (countField >= 0) {
+            record[countField]++;
+        }
+    }
+
+    /**
+     * Returns the outermost {@code Solo} method on the stack of the calling thread.
+     *
+     * @return the method name, e.g. {@code "clickOnText"}
+     */
+
+    private static String getSoloMethod() {
+        final StackTraceElement[] stack = new Throwable().getStackTrace();
+        for (int i = stack.length - 1; i >= 0; i--) {
+            if (SOLO_CLASS.equals(stack[i].getClassName())) {
+                return stack[i].getMethodName();
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * Describes records.
+     *
+     * @param title
+     *            the first line
+     * @param records
+     *            the records to describe
+     * @return the description
+     */
+
+    private static String describe(String title, Map<String, long[]> records) {
+        final List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>(records.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+            public int compare(Map.Entry<String, long[]> lhs, Map.Entry<String, long[]> rhs) {
+                final long lhsTime = lhs.getValue()[SLEPT] + lhs.getValue()[WAITED];
+                final long rhsTime = rhs.getValue()[SLEPT] + rhs.getValue()[WAITED];
+                return lhsTime < rhsTime ? 1 : lhsTime > rhsTime ? -1 : 0;
+            }
+        });
+        final long[] total = new long[FIELDS];
+        final StringBuilder description = new StringBuilder();
+        for (Map.Entry<String, long[]> entry : entries) {
+            describe(description, entry.getKey(), entry.getValue());
+            for (int i = 0; i < FIELDS; i++) {
+                total[i] += entry.getValue()[i];
+            }
+        }
+        final StringBuilder header = new StringBuilder(title).append(':');
+        describe(header, "total", total);
+        return header.append(description).toString();
+    }
+
+    private static void describe(StringBuilder description, String method, long[] record) {
+        description.append("\n  ").append(method).append(": slept ").append(record[SLEPT]).append(" ms in ").append(record[SLEEPS])
+                .append(" sleeps, waited ").append(record[WAITED]).append(" ms, ").append(record[POLLS]).append(" polls, ")
+                .append(record[TRAVERSALS]).append(" traversals");
+    }
+}
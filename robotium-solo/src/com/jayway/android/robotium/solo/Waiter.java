@@ -5,6 +5,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 import android.app.Activity;
+import android.util.Log;
 import android.view.View;
 import android.widget.TextView;
 
@@ -19,11 +20,13 @@ class Waiter {
 
     private final ActivityUtils activityUtils;
     private final ViewFetcher viewFetcher;
-    private final int TIMEOUT = 20000;
-    private final int SMALLTIMEOUT = 10000;
+    private final String LOG_TAG = "Robotium";
     private final Searcher searcher;
     private final Scroller scroller;
     private final Sleeper sleeper;
+    private final Clock clock;
+    private final TimingProfile timingProfile;
+    private volatile PollingPolicy pollingPolicy = new PollingPolicy();
 
     /**
      * Constructs this object.
@@ -46,6 +49,29 @@ class Waiter {
         this.searcher = searcher;
         this.scroller = scroller;
         this.sleeper = sleeper;
+        this.clock = sleeper.getClock();
+        this.timingProfile = sleeper.getTimingProfile();
+    }
+
+    /**
+     * Sets the policy that paces the checks of all wait loops.
+     * 
+     * @param pollingPolicy
+     *            the {@code PollingPolicy} to use
+     */
+
+    public void setPollingPolicy(PollingPolicy pollingPolicy) {
+        this.pollingPolicy = pollingPolicy;
+    }
+
+    /**
+     * Returns the policy that paces the checks of all wait loops.
+     * 
+     * @return the {@code PollingPolicy} in use
+     */
+
+    public PollingPolicy getPollingPolicy() {
+        return pollingPolicy;
     }
 
     /**
@@ -58,7 +84,7 @@ class Waiter {
      */
 
     public boolean waitForActivity(String name) {
-        return waitForActivity(name, SMALLTIMEOUT);
+        return waitForActivity(name, timingProfile.getSmallTimeout());
     }
 
     /**
@@ -73,16 +99,7 @@ class Waiter {
      */
 
     public boolean waitForActivity(String name, int timeout) {
-        long now = System.currentTimeMillis();
-        final long endTime = now + timeout;
-        while (!activityUtils.getCurrentActivity().getClass().getSimpleName().equals(name) && now < endTime) {
-            now = System.currentTimeMillis();
-        }
-        if (now < endTime)
-            return true;
-
-        else
-            return false;
+        return activityUtils.waitForActivity(name, timeout);
     }
 
     /**
@@ -96,23 +113,36 @@ class Waiter {
      */
 
     public <T extends View> boolean waitForView(final Class<T> viewClass, final int index, boolean sleep, boolean scroll) {
-        Set<T> uniqueViews = new HashSet<T>();
-        boolean foundMatchingView;
-
-        while (true) {
-            if (sleep)
-                sleeper.sleep();
+        return waitForView(new HashSet<T>(), viewClass, index, sleep, scroll);
+    }
 
-            foundMatchingView = searcher.searchFor(uniqueViews, viewClass, index);
+    /**
+     * Waits for a view to be shown, collecting the views found in a set owned by the caller.
+     * 
+     * @param uniqueViews
+     *            the set that receives the unique views found, on this and on scrolled pages
+     * @param viewClass
+     *            the {@code View} class to wait for
+     * @param index
+     *            the index of the view that is expected to be shown
+     * @return {@code true} if view is shown and {@code false} if it is not shown
+     */
 
-            if (foundMatchingView)
-                return true;
+    private <T extends View> boolean waitForView(Set<T> uniqueViews, final Class<T> viewClass, final int index, boolean sleep, boolean scroll) {
+        final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+        try {
+            while (true) {
+                if (searcher.searchFor(uniqueViews, viewClass, index))
+                    return true;
 
-            if (scroll && !scroller.scroll(Scroller.DOWN))
-                return false;
+                if (!scroll || !scroller.scroll(Scroller.DOWN))
+                    return false;
 
-            if (!scroll)
-                return false;
+                if (sleep)
+                    poll.sleep(Long.MAX_VALUE);
+            }
+        } finally {
+            poll.finish();
         }
     }
 
@@ -132,21 +162,24 @@ class Waiter {
 
     public <T extends View> boolean waitForView(final Class<T> viewClass, final int index, final int timeout, final boolean scroll) {
         Set<T> uniqueViews = new HashSet<T>();
-        final long endTime = System.currentTimeMillis() + timeout;
-        boolean foundMatchingView;
-
-        while (System.currentTimeMillis() < endTime) {
-            sleeper.sleep();
+        final long endTime = clock.uptimeMillis() + timeout;
+        final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+        try {
+            while (true) {
+                if (searcher.searchFor(uniqueViews, viewClass, index))
+                    return true;
 
-            foundMatchingView = searcher.searchFor(uniqueViews, viewClass, index);
+                if (clock.uptimeMillis() >= endTime)
+                    return false;
 
-            if (foundMatchingView)
-                return true;
+                if (scroll)
+                    scroller.scroll(Scroller.DOWN);
 
-            if (scroll)
-                scroller.scroll(Scroller.DOWN);
+                poll.sleep(endTime);
+            }
+        } finally {
+            poll.finish();
         }
-        return false;
     }
 
     /**
@@ -160,21 +193,49 @@ class Waiter {
      */
 
     public <T extends View> boolean waitForViews(final Class<T> viewClass, final Class<? extends View> viewClass2) {
-        final long endTime = System.currentTimeMillis() + SMALLTIMEOUT;
+        return waitFor(Conditions.any(Conditions.view(viewClass), Conditions.view(viewClass2)), timingProfile.getSmallTimeout(), true) != null;
+    }
+
+    /**
+     * Waits for a condition to be satisfied. In every check, all leaf conditions are evaluated against the same view snapshot; between checks the wait
+     * blocks until the UI changes, paced by the {@link PollingPolicy}.
+     * 
+     * @param condition
+     *            the condition to wait for
+     * @param timeout
+     *            the amount of time in milliseconds to wait
+     * @param scroll
+     *            {@code true} if scrolling should be performed between checks
+     * @return the condition that satisfied the wait, i.e. {@code condition} or for {@link Conditions#any(Condition...)} the satisfied branch, or
+     *         {@code null} if the condition is not satisfied before the timeout
+     */
 
-        while (System.currentTimeMillis() < endTime) {
+    public Condition waitFor(Condition condition, int timeout, boolean scroll) {
+        final long endTime = clock.uptimeMillis() + timeout;
+        final UiChangeTracker uiChangeTracker = viewFetcher.getUiChangeTracker();
+        final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+        try {
+            while (true) {
+                final int generation = uiChangeTracker.getGeneration();
+                final Condition satisfied = condition.evaluate(new ConditionContext(viewFetcher, activityUtils));
+                if (satisfied != null) {
+                    Log.d(LOG_TAG, "Wait for " + condition + " satisfied by " + satisfied);
+                    return satisfied;
+                }
 
-            if (waitForView(viewClass, 0, false, false)) {
-                return true;
-            }
+                if (clock.uptimeMillis() >= endTime) {
+                    Log.d(LOG_TAG, "Wait for " + condition + " timed out");
+                    return null;
+                }
 
-            if (waitForView(viewClass2, 0, false, false)) {
-                return true;
+                if (scroll && scroller.scroll(Scroller.DOWN)) {
+                    continue;
+                }
+                poll.awaitChange(uiChangeTracker, generation, endTime);
             }
-            scroller.scroll(Scroller.DOWN);
-            sleeper.sleep();
+        } finally {
+            poll.finish();
         }
-        return false;
     }
 
     /**
@@ -187,7 +248,7 @@ class Waiter {
      */
 
     public boolean waitForView(View view) {
-        return waitForView(view, TIMEOUT, true);
+        return waitForView(view, timingProfile.getTimeout(), true);
     }
 
     /**
@@ -219,22 +280,27 @@ class Waiter {
      */
 
     public boolean waitForView(View view, int timeout, boolean scroll) {
-        long startTime = System.currentTimeMillis();
+        long startTime = clock.uptimeMillis();
         long endTime = startTime + timeout;
+        final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+        try {
+            while (true) {
+                if (searcher.searchFor(view)) {
+                    return true;
+                }
 
-        while (System.currentTimeMillis() < endTime) {
-            sleeper.sleep();
+                if (clock.uptimeMillis() >= endTime) {
+                    return false;
+                }
 
-            final boolean foundAnyMatchingView = searcher.searchFor(view);
+                if (scroll)
+                    scroller.scroll(Scroller.DOWN);
 
-            if (foundAnyMatchingView) {
-                return true;
+                poll.sleep(endTime);
             }
-
-            if (scroll)
-                scroller.scroll(Scroller.DOWN);
+        } finally {
+            poll.finish();
         }
-        return false;
     }
 
     /**
@@ -245,21 +311,33 @@ class Waiter {
      * @return {@code true} if view is shown and {@code false} if it is not shown before the timeout
      */
 
-    public View waitForView(int id) {
-        ArrayList<View> views = new ArrayList<View>();
-        long startTime = System.currentTimeMillis();
-        long endTime = startTime + SMALLTIMEOUT;
-        while (System.currentTimeMillis() <= endTime) {
-            sleeper.sleep();
-            views = viewFetcher.getAllViews(false);
-            for (View v : views) {
-                if (v.getId() == id) {
-                    views = null;
-                    return v;
+    public View waitForView(final int id) {
+        long startTime = clock.uptimeMillis();
+        long endTime = startTime + timingProfile.getSmallTimeout();
+        final View[] view = new View[1];
+        final ViewVisitor idVisitor = new ViewVisitor() {
+            public Result visit(View visitedView, boolean sufficientlyShown) {
+                if (visitedView.getId() == id) {
+                    view[0] = visitedView;
+                    return Result.STOP;
+                }
+                return Result.CONTINUE;
+            }
+        };
+        final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+        try {
+            while (true) {
+                if (viewFetcher.visit(idVisitor, false)) {
+                    return view[0];
+                }
+                if (clock.uptimeMillis() > endTime) {
+                    return null;
                 }
+                poll.sleep(endTime);
             }
+        } finally {
+            poll.finish();
         }
-        return null;
     }
 
     /**
@@ -272,7 +350,7 @@ class Waiter {
      */
 
     public boolean waitForText(String text) {
-        return waitForText(text, 0, TIMEOUT, true);
+        return waitForText(text, 0, timingProfile.getTimeout(), true);
     }
 
     /**
@@ -288,7 +366,7 @@ class Waiter {
 
     public boolean waitForText(String text, int expectedMinimumNumberOfMatches) {
 
-        return waitForText(text, expectedMinimumNumberOfMatches, TIMEOUT, true);
+        return waitForText(text, expectedMinimumNumberOfMatches, timingProfile.getTimeout(), true);
     }
 
     /**
@@ -345,21 +423,50 @@ class Waiter {
      */
 
     public boolean waitForText(String text, int expectedMinimumNumberOfMatches, long timeout, boolean scroll, boolean onlyVisible) {
-        final long endTime = System.currentTimeMillis() + timeout;
+        return waitForText(text, expectedMinimumNumberOfMatches, new Deadline(clock, timeout), scroll, onlyVisible);
+    }
 
-        while (true) {
-            final boolean timedOut = System.currentTimeMillis() > endTime;
-            if (timedOut) {
-                return false;
-            }
+    /**
+     * Waits for a text to be shown as a step of an operation with a time budget. The wait ends when the budget is spent, also when the search itself
+     * scrolled for most of it.
+     * 
+     * @param text
+     *            the text that needs to be shown
+     * @param expectedMinimumNumberOfMatches
+     *            the minimum number of matches of text that must be shown. {@code 0} means any number of matches
+     * @param deadline
+     *            the budget of the operation that waits
+     * @param scroll
+     *            {@code true} if scrolling should be performed
+     * @param onlyVisible
+     *            {@code true} if only visible text views should be waited for
+     * @return {@code true} if text is found and {@code false} if it is not found before the budget is spent
+     * 
+     */
+
+    public boolean waitForText(String text, int expectedMinimumNumberOfMatches, Deadline deadline, boolean scroll, boolean onlyVisible) {
+        final UiChangeTracker uiChangeTracker = viewFetcher.getUiChangeTracker();
+        final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+        try {
+            while (true) {
+                final int generation = uiChangeTracker.getGeneration();
+                final boolean foundAnyTextView = searcher.searchFor(TextView.class, text, null, expectedMinimumNumberOfMatches, scroll, onlyVisible,
+                        deadline);
 
-            sleeper.sleep();
+                if (foundAnyTextView) {
+                    return true;
+                }
 
-            final boolean foundAnyTextView = searcher.searchFor(TextView.class, text, expectedMinimumNumberOfMatches, scroll, onlyVisible);
+                if (deadline.isExpired()) {
+                    return false;
+                }
 
-            if (foundAnyTextView) {
-                return true;
+                final long begin = deadline.begin();
+                poll.awaitChange(uiChangeTracker, generation, deadline.getEndTime());
+                deadline.spend("poll", begin);
             }
+        } finally {
+            poll.finish();
         }
     }
 
@@ -376,10 +483,21 @@ class Waiter {
 
     public <T extends View> T waitForAndGetView(int index, Class<T> classToFilterBy) {
 
-        long endTime = System.currentTimeMillis() + SMALLTIMEOUT;
-        while (System.currentTimeMillis() <= endTime && !waitForView(classToFilterBy, index, true, true));
-        int numberOfUniqueViews = searcher.getNumberOfUniqueViews();
-        ArrayList<T> views = RobotiumUtils.removeInvisibleViews(viewFetcher.getCurrentViews(classToFilterBy));
+        long endTime = clock.uptimeMillis() + timingProfile.getSmallTimeout();
+        final Set<T> uniqueViews = new HashSet<T>();
+        final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+        try {
+            while (true) {
+                uniqueViews.clear();
+                if (waitForView(uniqueViews, classToFilterBy, index, true, true) || clock.uptimeMillis() > endTime)
+                    break;
+                poll.sleep(endTime);
+            }
+        } finally {
+            poll.finish();
+        }
+        int numberOfUniqueViews = uniqueViews.size();
+        ArrayList<T> views = viewFetcher.getCurrentShownViews(classToFilterBy);
 
         if (views.size() < numberOfUniqueViews) {
             int newIndex = index - (numberOfUniqueViews - views.size());
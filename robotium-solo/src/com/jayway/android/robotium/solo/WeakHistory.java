@@ -0,0 +1,128 @@
+package com.jayway.android.robotium.solo;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/**
+ * Objects in the order they were first added, held through weak references so that the history never keeps an object alive. Entries whose object has
+ * been collected are dropped as the history grows: once it reaches its limit it is pruned, and the limit is raised to twice the entries left. The
+ * history therefore holds at most twice as many entries as there are live objects, or {@code MIN_LIMIT} entries, and never drops a live object on its
+ * own.
+ *
+ * @param <T>
+ *            the type of the objects
+ */
+
+class WeakHistory<T> {
+
+    static final int MIN_LIMIT = 64;
+
+    private final ArrayList<WeakReference<T>> entries = new ArrayList<WeakReference<T>>();
+    private int limit = MIN_LIMIT;
+
+    /**
+     * Adds an object to the end of the history, if not already in it.
+     *
+     * @param object
+     *            the object to add, ignored if {@code null}
+     */
+
+    public synchronized void add(T object) {
+        if (object == null) {
+            return;
+        }
+        final int size = entries.size();
+        if (size > 0 && entries.get(size - 1).get() == object) {
+            // The common case, the latest object seen again
+            return;
+        }
+        if (indexOf(object) >= 0) {
+            return;
+        }
+        if (size >= limit) {
+            prune();
+            limit = Math.max(MIN_LIMIT, 2 * entries.size());
+        }
+        entries.add(new WeakReference<T>(object));
+    }
+
+    /**
+     * Removes an object from the history.
+     *
+     * @param object
+     *            the object to remove
+     */
+
+    public synchronized void remove(T object) {
+        final int index = indexOf(object);
+        if (index >= 0) {
+            entries.remove(index);
+        }
+    }
+
+    /**
+     * Removes all objects from the history.
+     */
+
+    public synchronized void clear() {
+        entries.clear();
+        limit = MIN_LIMIT;
+    }
+
+    /**
+     * Returns the objects in the history that have not been collected, the oldest first. Collected entries are dropped.
+     *
+     * @return a new list of the objects
+     */
+
+    public synchronized ArrayList<T> getAll() {
+        final ArrayList<T> objects = new ArrayList<T>(entries.size());
+        for (int i = 0; i < entries.size();) {
+            final T object = entries.get(i).get();
+            if (object == null) {
+                entries.remove(i);
+            } else {
+                objects.add(object);
+                i++;
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * Returns the number of entries, including those not yet found to be collected.
+     *
+     * @return the number of entries
+     */
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the index of an object.
+     *
+     * @return the index, or {@code -1} if the object is not in the history
+     */
+
+    private int indexOf(T object) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).get() == object) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Drops the entries whose object has been collected.
+     */
+
+    private void prune() {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).get() == null) {
+                entries.remove(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.jayway.android.robotium.solo;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import android.view.View;
+
+/**
+ * Reads the window root views from the platform window manager. The reflective {@code Field} handles are resolved once and cached, and the accessor adapts
+ * to where the platform keeps them: {@code WindowManagerImpl} before API 17 and {@code WindowManagerGlobal} from API 17, with {@code mViews} stored as an
+ * array or, from API 19, as an {@code ArrayList}.
+ *
+ */
+
+class WindowManagerAccessor {
+
+    private Field viewsField;
+    private Object windowManager;
+    private boolean resolved;
+
+    /**
+     * Returns the root views of the windows shown on the screen.
+     *
+     * @return the root views of the windows shown on the screen, or {@code null} if they can not be read
+     *
+     */
+
+    public View[] getWindowDecorViews() {
+        final Object views = getViews();
+        if (views instanceof View[]) {
+            return (View[]) views;
+        }
+        if (views instanceof List<?>) {
+            try {
+                return ((List<?>) views).toArray(new View[0]);
+            } catch (RuntimeException e) {
+                // The list was modified by the UI thread while being copied
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of windows shown on the screen, without copying the root views.
+     *
+     * @return the number of windows shown on the screen, or {@code 0} if it can not be read
+     *
+     */
+
+    public int getWindowCount() {
+        final Object views = getViews();
+        if (views instanceof View[]) {
+            return ((View[]) views).length;
+        }
+        if (views instanceof List<?>) {
+            return ((List<?>) views).size();
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the current value of the {@code mViews} field.
+     *
+     * @return the {@code View[]} or {@code List} holding the window root views, or {@code null}
+     */
+
+    private Object getViews() {
+        if (!resolve()) {
+            return null;
+        }
+        try {
+            return viewsField.get(windowManager);
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Resolves and caches the window manager instance and its {@code mViews} field.
+     *
+     * @return {@code true} if the window manager could be resolved
+     */
+
+    private synchronized boolean resolve() {
+        if (resolved) {
+            return windowManager != null;
+        }
+        final String className;
+        final String instanceFieldName;
+
+        if (android.os.Build.VERSION.SDK_INT >= 17) {
+            className = "android.view.WindowManagerGlobal";
+            instanceFieldName = "sDefaultWindowManager";
+        } else if (android.os.Build.VERSION.SDK_INT >= 13) {
+            className = "android.view.WindowManagerImpl";
+            instanceFieldName = "sWindowManager";
+        } else {
+            className = "android.view.WindowManagerImpl";
+            instanceFieldName = "mWindowManager";
+        }
+
+        try {
+            final Class<?> windowManagerClass = Class.forName(className);
+            final Field instanceField = windowManagerClass.getDeclaredField(instanceFieldName);
+            instanceField.setAccessible(true);
+            final Object instance = instanceField.get(null);
+            if (instance == null) {
+                // Not created yet, try again on the next call
+                return false;
+            }
+            viewsField = windowManagerClass.getDeclaredField("mViews");
+            viewsField.setAccessible(true);
+            windowManager = instance;
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        } catch (SecurityException e) {
+            e.printStackTrace();
+        } catch (NoSuchFieldException e) {
+            e.printStackTrace();
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+        resolved = true;
+        return windowManager != null;
+    }
+}
@@ -0,0 +1,63 @@
+package com.jayway.android.robotium.solo;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+/**
+ * Runs the benchmarks that need views on the UI thread of a device and logs their results with the tag {@code "Robotium"}. The JVM test runs of the
+ * builds skip the {@code *DeviceTest} classes.
+ *
+ */
+
+public class BenchmarkDeviceTest extends InstrumentationTestCase {
+
+    private static final String LOG_TAG = "Robotium";
+
+    public void testTraversal() throws Throwable {
+        Log.i(LOG_TAG, runOnMainSync(new Benchmark() {
+            public String run(Context context) {
+                return TraversalBenchmark.run(context);
+            }
+        }));
+    }
+
+    public void testSnapshotMemory() throws Throwable {
+        Log.i(LOG_TAG, runOnMainSync(new Benchmark() {
+            public String run(Context context) {
+                return SnapshotMemoryBenchmark.run(context);
+            }
+        }));
+    }
+
+    /**
+     * Runs a benchmark on the UI thread.
+     *
+     * @return the results of the benchmark
+     * @throws Throwable
+     *             if the benchmark failed
+     */
+
+    private String runOnMainSync(final Benchmark benchmark) throws Throwable {
+        final String[] result = new String[1];
+        final Throwable[] failure = new Throwable[1];
+        final Context context = getInstrumentation().getContext();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            public void run() {
+                try {
+                    result[0] = benchmark.run(context);
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return result[0];
+    }
+
+    private interface Benchmark {
+        String run(Context context);
+    }
+}
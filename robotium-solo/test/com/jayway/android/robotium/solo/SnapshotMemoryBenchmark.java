@@ -0,0 +1,190 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import android.content.Context;
+import android.os.Debug;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Checkable;
+import android.widget.TextView;
+
+/**
+ * Compares the memory used to capture the views of the {@link TraversalBenchmark} layout in three ways:
+ * <ul>
+ * <li>an {@code ArrayList<View>}, which holds no state, so every query reads the live views again;</li>
+ * <li>an {@code ArrayList} with one record object per view and a {@code HashMap} of the ids, as {@code ViewSnapshot} did before it used parallel
+ * arrays;</li>
+ * <li>a {@link ViewSnapshot}.</li>
+ * </ul>
+ * For each it reports the memory still in use after {@code COPIES} captures, and the objects and bytes allocated per capture. The strings captured by the
+ * records and the snapshot are included.
+ *
+ * Needs a device, see {@link BenchmarkDeviceTest}. Allocation counts are 0 where the runtime does not count allocations.
+ *
+ */
+
+class SnapshotMemoryBenchmark {
+
+    private static final int COPIES = 20;
+
+    /**
+     * Runs the benchmark. Must be called on the UI thread.
+     *
+     * @param context
+     *            the {@code Context} to create the views with
+     * @return the results, one line per way of capturing the views
+     */
+
+    static String run(Context context) {
+        final ViewGroup root = TraversalBenchmark.createLayout(context);
+        final ViewTraverser traverser = new ViewTraverser(new ViewFetcher((ActivityUtils) null));
+        final int viewCount = TraversalBenchmark.countViews(root);
+
+        final Capture views = new Capture() {
+            public Object capture() {
+                final ArrayList<View> views = new ArrayList<View>();
+                traverser.traverse(root, views, false);
+                return views;
+            }
+        };
+        final Capture records = new Capture() {
+            public Object capture() {
+                final ArrayList<View> views = new ArrayList<View>();
+                traverser.traverse(root, views, false);
+                return new RecordSnapshot(views);
+            }
+        };
+        final Capture snapshot = new Capture() {
+            public Object capture() {
+                final ViewSnapshot snapshot = new ViewSnapshot(viewCount);
+                try {
+                    snapshot.beginWindow(root, TraversalBenchmark.HEIGHT);
+                    traverser.traverse(root, snapshot, false);
+                } finally {
+                    snapshot.endWindow();
+                }
+                return snapshot;
+            }
+        };
+        return "Capture of " + viewCount + " views:\n" + describe("ArrayList<View>", views, viewCount) + "\n"
+                + describe("one record per view", records, viewCount) + "\n" + describe("ViewSnapshot", snapshot, viewCount);
+    }
+
+    /**
+     * Captures the views {@code COPIES} times and describes the memory in use and allocated per capture.
+     */
+
+    private static String describe(String name, Capture capture, int viewCount) {
+        // Loads the classes and fills the caches of the views before measuring
+        capture.capture();
+        final Object[] copies = new Object[COPIES];
+        final long before = getUsedMemory();
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        for (int i = 0; i < COPIES; i++) {
+            copies[i] = capture.capture();
+        }
+        Debug.stopAllocCounting();
+        final long retained = (getUsedMemory() - before) / COPIES;
+        if (copies[COPIES - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return name + ": " + retained + " bytes in use (" + (retained / viewCount) + " per view), " + Debug.getThreadAllocCount() / COPIES
+                + " objects and " + Debug.getThreadAllocSize() / COPIES + " bytes allocated";
+    }
+
+    private static long getUsedMemory() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            runtime.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private interface Capture {
+        Object capture();
+    }
+
+    /**
+     * The views captured as one record per view with an id index, the layout of {@code ViewSnapshot} before parallel arrays.
+     *
+     */
+
+    private static final class RecordSnapshot {
+
+        final ArrayList<Record> records;
+        final HashMap<Integer, Record> idIndex = new HashMap<Integer, Record>();
+
+        RecordSnapshot(ArrayList<View> views) {
+            records = new ArrayList<Record>(views.size());
+            final int[] xy = new int[2];
+            for (int i = 0; i < views.size(); i++) {
+                final View view = views.get(i);
+                view.getLocationOnScreen(xy);
+                final Record record = new Record(view, i, xy);
+                records.add(record);
+                if (record.id != View.NO_ID && !idIndex.containsKey(record.id)) {
+                    idIndex.put(record.id, record);
+                }
+            }
+        }
+    }
+
+    private static final class Record {
+
+        final View view;
+        final Class<? extends View> viewClass;
+        final int index;
+        final int parentIndex;
+        final int id;
+        final int left;
+        final int top;
+        final int right;
+        final int bottom;
+        final int visibility;
+        final boolean shown;
+        final boolean sufficientlyShown;
+        final long drawingTime;
+        final String text;
+        final String error;
+        final String hint;
+        final boolean checkable;
+        final boolean checked;
+
+        Record(View view, int index, int[] location) {
+            this.view = view;
+            this.viewClass = view.getClass();
+            this.index = index;
+            this.parentIndex = -1;
+            this.id = view.getId();
+            this.left = location[0];
+            this.top = location[1];
+            this.right = location[0] + view.getWidth();
+            this.bottom = location[1] + view.getHeight();
+            this.visibility = view.getVisibility();
+            this.shown = view.isShown();
+            this.sufficientlyShown = true;
+            this.drawingTime = view.getDrawingTime();
+            if (view instanceof TextView) {
+                final TextView textView = (TextView) view;
+                this.text = toString(textView.getText(), "");
+                this.error = toString(textView.getError(), null);
+                this.hint = toString(textView.getHint(), null);
+            } else {
+                this.text = null;
+                this.error = null;
+                this.hint = null;
+            }
+            this.checkable = view instanceof Checkable;
+            this.checked = checkable && ((Checkable) view).isChecked();
+        }
+
+        private static String toString(CharSequence sequence, String defaultValue) {
+            return sequence != null ? sequence.toString() : defaultValue;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.test.ActivityInstrumentationTestCase2;
+import android.widget.CheckBox;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * Uses one {@link Solo} from several threads at once and checks that every search gives the result it gives when run alone. Searches count their
+ * matches in per-call state, so a search must not see the matches of another search running at the same time.
+ *
+ * Needs a device: run it from an Android test project that has {@code test/} as a source folder and declares the activity in its manifest,
+ * {@code <activity android:name="com.jayway.android.robotium.solo.SoloConcurrencyDeviceTest$StressActivity" />}. The JVM test runs of the builds
+ * skip the {@code *DeviceTest} classes.
+ *
+ */
+
+public class SoloConcurrencyDeviceTest extends ActivityInstrumentationTestCase2<SoloConcurrencyDeviceTest.StressActivity> {
+
+    private static final int ROWS = 8;
+    private static final int SEARCH_THREADS = 6;
+    private static final int ROUNDS = 4;
+    private static final int SEARCH_TIMEOUT = 1000;
+    private static final long JOIN_TIMEOUT = 120000;
+
+    private Solo solo;
+
+    public SoloConcurrencyDeviceTest() {
+        super(StressActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        solo = new Solo(getInstrumentation(), getActivity());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        solo.finishOpenedActivities();
+        super.tearDown();
+    }
+
+    public void testParallelSearchesMatchSerialSearches() throws Exception {
+        final Map<Query, Boolean> expected = searchAll(createQueries());
+        final List<String> failures = runInParallel(SEARCH_THREADS, new Worker() {
+            public void run(int thread, List<String> failures) {
+                compare(expected, thread, failures);
+            }
+        });
+        assertTrue(failures.toString(), failures.isEmpty());
+    }
+
+    public void testSearchesWhileClicking() throws Exception {
+        final Map<Query, Boolean> expected = searchAll(createQueries());
+        final List<String> failures = runInParallel(SEARCH_THREADS + 1, new Worker() {
+            public void run(int thread, List<String> failures) {
+                if (thread == 0) {
+                    // A single thread clicks: the pointer events of two clicking threads would interleave into one gesture
+                    for (int row = 0; row < ROWS; row++) {
+                        solo.clickOnText("Box " + row);
+                    }
+                } else {
+                    compare(expected, thread, failures);
+                }
+            }
+        });
+        assertTrue(failures.toString(), failures.isEmpty());
+        for (int row = 0; row < ROWS; row++) {
+            assertTrue("Box " + row + " is not checked", solo.isCheckBoxChecked("Box " + row));
+        }
+    }
+
+    /**
+     * Returns queries whose results depend on the number of matches each search counts.
+     */
+
+    private static List<Query> createQueries() {
+        final List<Query> queries = new ArrayList<Query>();
+        for (int row = 0; row < ROWS; row++) {
+            queries.add(new Query("Label " + row, 1));
+            queries.add(new Query("Box " + row, 1));
+        }
+        queries.add(new Query("Label", ROWS));
+        queries.add(new Query("Label", ROWS + 1));
+        queries.add(new Query("Label [0-3]", 4));
+        queries.add(new Query("Label [0-3]", 5));
+        queries.add(new Query("Box", ROWS));
+        queries.add(new Query("Missing", 1));
+        return queries;
+    }
+
+    private Map<Query, Boolean> searchAll(List<Query> queries) {
+        final Map<Query, Boolean> results = new LinkedHashMap<Query, Boolean>();
+        for (Query query : queries) {
+            results.put(query, Boolean.valueOf(search(query)));
+        }
+        return results;
+    }
+
+    private boolean search(Query query) {
+        return solo.searchText(query.text, query.minimumNumberOfMatches, false, true, SEARCH_TIMEOUT);
+    }
+
+    /**
+     * Runs the queries several times, starting at a different query in each thread, and records the results that differ from the serial ones.
+     */
+
+    private void compare(Map<Query, Boolean> expected, int thread, List<String> failures) {
+        final List<Query> queries = new ArrayList<Query>(expected.keySet());
+        Collections.rotate(queries, thread * 3);
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Query query : queries) {
+                final boolean found = search(query);
+                if (found != expected.get(query).booleanValue()) {
+                    failures.add("thread " + thread + ", round " + round + ": " + query + " found=" + found);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a worker on several threads that start at the same time.
+     *
+     * @return the failures recorded by the workers
+     */
+
+    private static List<String> runInParallel(int threadCount, final Worker worker) throws InterruptedException {
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int thread = i;
+            threads[i] = new Thread("solo-stress-" + i) {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        worker.run(thread, failures);
+                    } catch (Throwable e) {
+                        failures.add("thread " + thread + ": " + e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        final long endTime = System.currentTimeMillis() + JOIN_TIMEOUT;
+        for (Thread thread : threads) {
+            thread.join(Math.max(1, endTime - System.currentTimeMillis()));
+            if (thread.isAlive()) {
+                failures.add(thread.getName() + " did not finish");
+            }
+        }
+        return failures;
+    }
+
+    private interface Worker {
+        void run(int thread, List<String> failures);
+    }
+
+    private static final class Query {
+        final String text;
+        final int minimumNumberOfMatches;
+
+        Query(String text, int minimumNumberOfMatches) {
+            this.text = text;
+            this.minimumNumberOfMatches = minimumNumberOfMatches;
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + text + "\" x" + minimumNumberOfMatches;
+        }
+    }
+
+    /**
+     * Shows {@code ROWS} rows, each with a label and a check box.
+     *
+     */
+
+    public static class StressActivity extends Activity {
+
+        @Override
+        protected void onCreate(Bundle savedInstanceState) {
+            super.onCreate(savedInstanceState);
+            final LinearLayout rows = new LinearLayout(this);
+            rows.setOrientation(LinearLayout.VERTICAL);
+            for (int row = 0; row < ROWS; row++) {
+                final LinearLayout line = new LinearLayout(this);
+                final TextView label = new TextView(this);
+                label.setText("Label " + row);
+                line.addView(label);
+                final CheckBox box = new CheckBox(this);
+                box.setText("Box " + row);
+                line.addView(box);
+                rows.addView(line);
+            }
+            setContentView(rows);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the time to search a screen of UI labels for typical {@code searchText} queries three ways: compiling the expression for every view, as before
+ * {@link PatternCache}, with a cached {@code Pattern}, and with a {@link TextMatcher}. Each view has a text, an error and a hint, as checked by
+ * {@code RobotiumUtils.checkAndGetMatches}. Run it with {@code main}; it is not a test.
+ *
+ */
+
+public class TextMatcherBenchmark {
+
+    private static final int VIEWS = 500;
+    private static final int RUNS = 200;
+    private static final String[] QUERIES = { "Place order", "Total", "Forgot your password\\?", "^Checkout", "Shipping address.*" };
+    private static final String[] WORDS = { "Place", "order", "Total", "Checkout", "Shipping", "address", "Forgot", "your", "password?", "Sign", "in",
+            "Cancel", "Continue", "Settings", "Account", "Quantity", "Remove", "Apply", "coupon", "$12.99", "Free", "delivery", "Back", "Next" };
+
+    private static volatile int sink;
+
+    public static void main(String[] args) {
+        final List<String[]> views = createViews(new Random(42));
+        // Warm up the JIT on every query and mode before measuring
+        for (String query : QUERIES) {
+            for (int mode = 0; mode < 3; mode++) {
+                best(query, views, mode);
+            }
+        }
+        System.out.println("us per " + VIEWS + " views, best of " + RUNS + " runs");
+        System.out.println(pad("query", 28) + pad("compile/view", 16) + pad("cached Pattern", 16) + "TextMatcher");
+        for (String query : QUERIES) {
+            final long compiling = best(query, views, 0);
+            final long cached = best(query, views, 1);
+            final long matcher = best(query, views, 2);
+            System.out.println(pad("\"" + query + "\"", 28) + pad(micros(compiling), 16) + pad(micros(cached), 16) + micros(matcher));
+        }
+    }
+
+    /**
+     * Returns the views of a screen as {text, error, hint}, mostly two to five word labels with empty errors and hints.
+     */
+
+    private static List<String[]> createViews(Random random) {
+        final List<String[]> views = new ArrayList<String[]>(VIEWS);
+        for (int i = 0; i < VIEWS; i++) {
+            final StringBuilder text = new StringBuilder();
+            final int words = 2 + random.nextInt(4);
+            for (int j = 0; j < words; j++) {
+                if (j > 0) {
+                    text.append(' ');
+                }
+                text.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            final String hint = random.nextInt(10) == 0 ? "Enter " + WORDS[random.nextInt(WORDS.length)] : "";
+            views.add(new String[] { text.toString(), "", hint });
+        }
+        return views;
+    }
+
+    private static long best(String query, List<String[]> views, int mode) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            final long begin = System.nanoTime();
+            sink += search(query, views, mode);
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        return best;
+    }
+
+    private static int search(String query, List<String[]> views, int mode) {
+        int matches = 0;
+        final Pattern cached = mode == 1 ? Pattern.compile(query) : null;
+        final TextMatcher matcher = mode == 2 ? new TextMatcher(query) : null;
+        for (String[] view : views) {
+            for (String text : view) {
+                final boolean found;
+                if (mode == 0) {
+                    found = Pattern.compile(query).matcher(text).find();
+                } else if (mode == 1) {
+                    found = cached.matcher(text).find();
+                } else {
+                    found = matcher.find(text);
+                }
+                if (found) {
+                    matches++;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static String micros(long nanos) {
+        return String.valueOf(nanos / 100 / 10.0);
+    }
+
+    private static String pad(String text, int width) {
+        final StringBuilder builder = new StringBuilder(text);
+        while (builder.length() < width) {
+            builder.append(' ');
+        }
+        return builder.toString();
+    }
+}
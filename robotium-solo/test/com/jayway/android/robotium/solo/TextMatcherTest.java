@@ -0,0 +1,94 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link TextMatcher} gives the results of {@code java.util.regex} for every kind of search expression, on hand-picked cases and on random
+ * expressions and texts.
+ *
+ */
+
+public class TextMatcherTest extends TestCase {
+
+    private static final int RANDOM_EXPRESSIONS = 5000;
+    private static final int TEXTS_PER_EXPRESSION = 40;
+    private static final String[] TOKENS = { "a", "b", "ab", "Log in", "x", " ", "\n", "\r\n", "\u2028", "$", "^", ".", ".*", "*", "+", "?", "|", "(",
+            ")", "[", "]", "{", "}", "\\", "\\.", "\\$", "\\(", "\\d", "\\Q", "\\E", "\\\\", "abcdefgh", "abcabcab", "\u00e9", "\u0101" };
+
+    public void testClassifiesExpressions() {
+        assertEquals(TextMatcher.Kind.LITERAL, new TextMatcher("Log in").getKind());
+        assertEquals(TextMatcher.Kind.LITERAL, new TextMatcher("Forgot your password\\?").getKind());
+        assertEquals(TextMatcher.Kind.PREFIX, new TextMatcher("^Checkout").getKind());
+        assertEquals(TextMatcher.Kind.PREFIX, new TextMatcher("Shipping address.*").getKind());
+        assertEquals(TextMatcher.Kind.PREFIX, new TextMatcher("^Total.*").getKind());
+        assertEquals(TextMatcher.Kind.REGEX, new TextMatcher("Label [0-3]").getKind());
+        assertEquals(TextMatcher.Kind.REGEX, new TextMatcher("\\d+ items").getKind());
+        assertRejected("trailing\\");
+    }
+
+    public void testHandPickedCases() {
+        final String[] expressions = { "", "Log in", "log in", "^Log", "in.*", "^Log in.*", ".*", "^", "Forgot your password\\?", "\\$5.00",
+                "a long literal text", "ext", "^.*", "Total\\.", "\\.\\*", "Label [0-3]", "(Yes|No)" };
+        final String[] texts = { "", "Log in", "Log in now", "Please Log in", "log in", "Log\nin", "Log in\n", "Log in\nagain", "Forgot your password?",
+                "Price: $5.00", "this is a long literal text indeed", "Total.", "Label 2", "Yes", ".*" };
+        for (String expression : expressions) {
+            for (String text : texts) {
+                assertSameResults(expression, text);
+            }
+        }
+    }
+
+    public void testRandomExpressionsMatchTheRegexEngine() {
+        final Random random = new Random(20121016L);
+        int literals = 0;
+        for (int i = 0; i < RANDOM_EXPRESSIONS; i++) {
+            final String expression = randomString(random, 4);
+            try {
+                Pattern.compile(expression);
+            } catch (PatternSyntaxException e) {
+                assertRejected(expression);
+                continue;
+            }
+            if (new TextMatcher(expression).getKind() != TextMatcher.Kind.REGEX) {
+                literals++;
+            }
+            for (int j = 0; j < TEXTS_PER_EXPRESSION; j++) {
+                // Embed the expression itself in some texts so that literals are found
+                final String text = random.nextBoolean() ? randomString(random, 6) : randomString(random, 2) + expression + randomString(random, 2);
+                assertSameResults(expression, text);
+            }
+        }
+        assertTrue("Too few literal expressions generated: " + literals, literals > RANDOM_EXPRESSIONS / 10);
+    }
+
+    private static void assertSameResults(String expression, String text) {
+        final TextMatcher matcher = new TextMatcher(expression);
+        final Pattern pattern = Pattern.compile(expression);
+        final String description = "\"" + expression + "\" (" + matcher.getKind() + ") on \"" + text + "\"";
+        assertEquals("find " + description, pattern.matcher(text).find(), matcher.find(text));
+        assertEquals("matches " + description, pattern.matcher(text).matches(), matcher.matches(text));
+    }
+
+    private static void assertRejected(String expression) {
+        try {
+            new TextMatcher(expression);
+            fail("Accepted the invalid expression \"" + expression + "\"");
+        } catch (PatternSyntaxException expected) {
+        }
+    }
+
+    private static String randomString(Random random, int maxTokens) {
+        final StringBuilder builder = new StringBuilder();
+        final int tokens = random.nextInt(maxTokens + 1);
+        for (int i = 0; i < tokens; i++) {
+            // Favour the plain tokens so that many expressions are literals
+            final int bound = random.nextInt(3) == 0 ? TOKENS.length : 6;
+            builder.append(TOKENS[random.nextInt(bound)]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,221 @@
+package com.jayway.android.robotium.solo;
+
+import java.util.ArrayList;
+
+import android.content.Context;
+import android.os.Debug;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.CheckBox;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+/**
+ * Compares walking a view hierarchy with {@link ViewTraverser} and with the recursive {@code ViewFetcher.addChildren} it replaced, in time and
+ * allocations per 1,000 views. Both walks collect the sufficiently shown views, as {@code getViews(parent, true)} does. The layout is built detached from
+ * any window: a {@code ScrollView} with a form nested deep inside it, as in a fragment inside a decor view.
+ *
+ * Needs a device, see {@link BenchmarkDeviceTest}. Allocation counts are 0 where the runtime does not count allocations.
+ *
+ */
+
+class TraversalBenchmark {
+
+    static final int WIDTH = 480;
+    static final int HEIGHT = 800;
+    private static final int NESTING = 8;
+    private static final int ROWS = 200;
+    private static final int WARM_UP_RUNS = 20;
+    private static final int RUNS = 50;
+
+    /**
+     * Builds and lays out the benchmark layout: {@code NESTING} nested layouts holding {@code ROWS} rows of five views each, two of them with an id.
+     *
+     * @param context
+     *            the {@code Context} to create the views with
+     * @return the root of the layout
+     */
+
+    static ViewGroup createLayout(Context context) {
+        final ScrollView root = new ScrollView(context);
+        ViewGroup parent = root;
+        for (int i = 0; i < NESTING; i++) {
+            final LinearLayout nested = new LinearLayout(context);
+            nested.setOrientation(LinearLayout.VERTICAL);
+            parent.addView(nested);
+            parent = nested;
+        }
+        for (int row = 0; row < ROWS; row++) {
+            final LinearLayout line = new LinearLayout(context);
+            final TextView label = new TextView(context);
+            label.setId(2 * row + 1);
+            label.setText("Label " + row);
+            line.addView(label);
+            final CheckBox box = new CheckBox(context);
+            box.setId(2 * row + 2);
+            box.setText("Box " + row);
+            line.addView(box);
+            final FrameLayout frame = new FrameLayout(context);
+            final TextView value = new TextView(context);
+            value.setText(String.valueOf(row));
+            frame.addView(value);
+            line.addView(frame);
+            parent.addView(line);
+        }
+        root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY), View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, WIDTH, HEIGHT);
+        return root;
+    }
+
+    /**
+     * Runs the benchmark. Must be called on the UI thread.
+     *
+     * @param context
+     *            the {@code Context} to create the views with
+     * @return the results, one line per walk
+     * @throws IllegalStateException
+     *             if the two walks collect different views
+     */
+
+    static String run(Context context) {
+        final ViewGroup root = createLayout(context);
+        final ViewTraverser traverser = new ViewTraverser(new ViewFetcher((ActivityUtils) null));
+        final RecursiveWalk recursiveWalk = new RecursiveWalk();
+        final ArrayList<View> views = new ArrayList<View>();
+
+        final Runnable recursive = new Runnable() {
+            public void run() {
+                views.clear();
+                recursiveWalk.addChildren(views, root, true);
+            }
+        };
+        final Runnable iterative = new Runnable() {
+            public void run() {
+                views.clear();
+                traverser.traverse(root, views, true);
+            }
+        };
+
+        recursive.run();
+        final ArrayList<View> expected = new ArrayList<View>(views);
+        iterative.run();
+        if (!expected.equals(views)) {
+            throw new IllegalStateException("The walks collected " + expected.size() + " and " + views.size() + " views");
+        }
+        final int viewCount = countViews(root);
+        return "Traversal of " + viewCount + " views, " + expected.size() + " sufficiently shown, per 1000 views:\n"
+                + describe("recursive addChildren", recursive, viewCount) + "\n" + describe("ViewTraverser", iterative, viewCount);
+    }
+
+    /**
+     * Runs a walk and describes its best time and its average allocations per 1,000 views.
+     */
+
+    private static String describe(String name, Runnable walk, int viewCount) {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            walk.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            final long begin = System.nanoTime();
+            walk.run();
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        // Counted in a separate loop, as counting slows the allocations down
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        for (int i = 0; i < RUNS; i++) {
+            walk.run();
+        }
+        Debug.stopAllocCounting();
+        final long objects = Debug.getThreadAllocCount() * 1000L / RUNS / viewCount;
+        final long bytes = Debug.getThreadAllocSize() * 1000L / RUNS / viewCount;
+        return name + ": " + (best / viewCount) + " us, " + objects + " objects, " + bytes + " bytes";
+    }
+
+    static int countViews(ViewGroup group) {
+        int count = group.getChildCount();
+        for (int i = 0; i < group.getChildCount(); i++) {
+            if (group.getChildAt(i) instanceof ViewGroup) {
+                count += countViews((ViewGroup) group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The recursive walk of {@code ViewFetcher} before {@link ViewTraverser}, kept as the baseline. The display height is {@code HEIGHT}, as there is no
+     * {@code Activity} to read it from.
+     *
+     */
+
+    private static final class RecursiveWalk {
+
+        void addChildren(ArrayList<View> views, ViewGroup viewGroup, boolean onlySufficientlyVisible) {
+            for (int i = 0; i < viewGroup.getChildCount(); i++) {
+                final View child = viewGroup.getChildAt(i);
+
+                if (onlySufficientlyVisible && isViewSufficientlyShown(child))
+                    views.add(child);
+
+                else if (!onlySufficientlyVisible)
+                    views.add(child);
+
+                if (child instanceof ViewGroup) {
+                    addChildren(views, (ViewGroup) child, onlySufficientlyVisible);
+                }
+            }
+        }
+
+        boolean isViewSufficientlyShown(View view) {
+            final int[] xyView = new int[2];
+            final int[] xyParent = new int[2];
+
+            if (view == null)
+                return false;
+
+            final float viewHeight = view.getHeight();
+            final View parent = getScrollOrListParent(view);
+            view.getLocationOnScreen(xyView);
+
+            if (parent == null) {
+                xyParent[1] = 0;
+            } else {
+                parent.getLocationOnScreen(xyParent);
+            }
+
+            if (xyView[1] + (viewHeight / 2.0f) > getScrollListWindowHeight(view))
+                return false;
+
+            else if (xyView[1] + (viewHeight / 2.0f) < xyParent[1])
+                return false;
+
+            return true;
+        }
+
+        View getScrollOrListParent(View view) {
+            if (!(view instanceof android.widget.AbsListView) && !(view instanceof android.widget.ScrollView)) {
+                try {
+                    return getScrollOrListParent((View) view.getParent());
+                } catch (Exception e) {
+                    return null;
+                }
+            } else {
+                return view;
+            }
+        }
+
+        float getScrollListWindowHeight(View view) {
+            final int[] xyParent = new int[2];
+            final View parent = getScrollOrListParent(view);
+            if (parent == null) {
+                return HEIGHT;
+            }
+            parent.getLocationOnScreen(xyParent);
+            return xyParent[1] + parent.getHeight();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.jayway.android.robotium.solo;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs the timeout paths of the polling waits on a {@link VirtualClock}. The tests need no device and no views, so they run on a plain JVM; a 20 second
+ * wait finishes in the time its checks take.
+ *
+ */
+
+public class VirtualClockTest extends TestCase {
+
+    private static final int TIMEOUT = 20000;
+    private static final long MAX_REAL_TIME = 2000;
+
+    private VirtualClock clock;
+    private Sleeper sleeper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clock = new VirtualClock();
+        sleeper = new Sleeper(clock);
+    }
+
+    public void testSleepAdvancesTimeWithoutBlocking() {
+        final long begin = System.nanoTime();
+        clock.sleep(TIMEOUT);
+        assertEquals(TIMEOUT, clock.uptimeMillis());
+        assertEquals(1, clock.getSleepCount());
+        assertTrue("Slept in real time", elapsedRealTime(begin) < MAX_REAL_TIME);
+    }
+
+    public void testDeadlineIsSpentOnVirtualTime() {
+        final Deadline deadline = new Deadline(clock, 10000);
+        final long begin = deadline.begin();
+        clock.advance(4000);
+        deadline.spend("scroll", begin);
+        assertEquals(6000, deadline.getRemaining());
+        assertEquals(500, deadline.cap(500));
+        assertFalse(deadline.isExpired());
+
+        clock.advance(7000);
+        assertEquals(0, deadline.getRemaining());
+        assertEquals(0, deadline.cap(500));
+        assertTrue(deadline.isExpired());
+        assertEquals(10000, deadline.getEndTime());
+        assertEquals("11000 of 10000 ms spent: scroll 4000 ms (1x)", deadline.describe());
+    }
+
+    public void testCompatPausesAreFixedSleeps() {
+        sleeper.setUiIdleWaiter(new UiIdleWaiter(null, sleeper));
+        sleeper.sleep();
+        sleeper.pause(TimingProfile.COMPAT.getSpinWait());
+        final Deadline deadline = new Deadline(clock, 700);
+        sleeper.pause(deadline);
+        sleeper.pause(deadline);
+
+        final long expected = TimingProfile.COMPAT.getPause() + TimingProfile.COMPAT.getSpinWait() + 700;
+        assertEquals(expected, clock.uptimeMillis());
+        assertEquals(4, clock.getSleepCount());
+        assertTrue(deadline.isExpired());
+    }
+
+    public void testPollTimesOutAfterBackoff() {
+        final PollingPolicy pollingPolicy = new PollingPolicy();
+        final long begin = System.nanoTime();
+        final int checks = pollUntilTimeout(pollingPolicy, null);
+
+        assertEquals(TIMEOUT, clock.uptimeMillis());
+        assertEquals(expectedChecks(pollingPolicy), checks);
+        assertEquals(1, pollingPolicy.getWaitCount());
+        assertEquals(checks, pollingPolicy.getPollCount());
+        assertTrue("Waited in real time", elapsedRealTime(begin) < MAX_REAL_TIME);
+    }
+
+    public void testPollRechecksSoonAfterUiChange() {
+        final FrameClock frameClock = new FrameClock();
+        clock = frameClock;
+        sleeper = new Sleeper(clock);
+        final UiChangeTracker uiChangeTracker = new UiChangeTracker(clock, sleeper.getWaitAccounting());
+        frameClock.uiChangeTracker = uiChangeTracker;
+        final PollingPolicy pollingPolicy = new PollingPolicy();
+        final long begin = System.nanoTime();
+        final int checks = pollUntilTimeout(pollingPolicy, uiChangeTracker);
+
+        assertTrue("No frame was drawn", frameClock.frames > 0);
+        assertEquals(TIMEOUT, clock.uptimeMillis());
+        assertTrue("Changes did not bring the checks forward", checks > expectedChecks(pollingPolicy));
+        assertTrue("Checked more often than the initial delay", checks <= TIMEOUT / pollingPolicy.getDelay(1) + 1);
+        assertTrue("Waited in real time", elapsedRealTime(begin) < MAX_REAL_TIME);
+    }
+
+    /**
+     * Polls a condition that is never satisfied until the wait times out, as the wait loops of {@code Waiter} do.
+     *
+     * @param pollingPolicy
+     *            the policy to pace the checks with
+     * @param uiChangeTracker
+     *            the tracker to wait for UI changes on, or {@code null} to sleep between checks
+     * @return the number of checks made
+     */
+
+    private int pollUntilTimeout(PollingPolicy pollingPolicy, UiChangeTracker uiChangeTracker) {
+        final long endTime = clock.getEndTime(TIMEOUT);
+        final PollingPolicy.Poll poll = pollingPolicy.start(sleeper);
+        int checks = 0;
+        try {
+            while (true) {
+                final int generation = uiChangeTracker != null ? uiChangeTracker.getGeneration() : 0;
+                checks++;
+                if (clock.uptimeMillis() >= endTime) {
+                    return checks;
+                }
+                if (uiChangeTracker != null) {
+                    poll.awaitChange(uiChangeTracker, generation, endTime);
+                } else {
+                    poll.sleep(endTime);
+                }
+            }
+        } finally {
+            poll.finish();
+        }
+    }
+
+    /**
+     * Returns the number of checks a wait of {@code TIMEOUT} makes with the delays of a policy.
+     */
+
+    private static int expectedChecks(PollingPolicy pollingPolicy) {
+        long time = 0;
+        int checks = 1;
+        while (time < TIMEOUT) {
+            time += pollingPolicy.getDelay(checks);
+            checks++;
+        }
+        return checks;
+    }
+
+    private static long elapsedRealTime(long begin) {
+        return (System.nanoTime() - begin) / 1000000L;
+    }
+
+    /**
+     * A {@code VirtualClock} on which the UI changes every few milliseconds that a thread waits for a change, faster than a screen with an
+     * indeterminate {@code ProgressBar} redraws.
+     *
+     */
+
+    private static final class FrameClock extends VirtualClock {
+
+        private static final int FRAME = 4;
+
+        UiChangeTracker uiChangeTracker;
+        int frames;
+
+        @Override
+        public void await(Object lock, long millis) {
+            sleep(Math.min(millis, FRAME));
+            if (millis >= FRAME) {
+                frames++;
+                uiChangeTracker.onGlobalLayout();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.jayway.android.robotium.solo;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs the {@link WeakHistory} behind {@code ActivityHistory} through a long scenario of screens that are opened and closed, with plain objects in place
+ * of activities so that it runs on a JVM. Half the closed screens are never removed from the history, as when an {@code onDestroy} is missed, and must
+ * still be released.
+ *
+ */
+
+public class WeakHistoryTest extends TestCase {
+
+    private static final int STEPS = 2000;
+    private static final int PAYLOAD_SIZE = 64 * 1024;
+    private static final int MAX_OPEN = 4;
+    private static final long MAX_HEAP_GROWTH = 16 * 1024 * 1024;
+
+    public void testSoakKeepsHeapFlat() {
+        final WeakHistory<Screen> history = new WeakHistory<Screen>();
+        final List<Screen> open = new ArrayList<Screen>();
+        runSteps(history, open, 0, STEPS / 10);
+        final long warmHeap = collectAndMeasure();
+
+        final WeakReference<Screen> closed = runSteps(history, open, STEPS / 10, STEPS);
+        final long endHeap = collectAndMeasure();
+
+        assertNull("A closed screen was not collected", closed.get());
+        assertEquals(open, history.getAll());
+        assertEquals(open.size(), history.size());
+        assertTrue("Heap grew by " + (endHeap - warmHeap) + " bytes", endHeap - warmHeap < MAX_HEAP_GROWTH);
+    }
+
+    public void testKeepsLiveEntriesPastTheLimit() {
+        final WeakHistory<Screen> history = new WeakHistory<Screen>();
+        final List<Screen> open = new ArrayList<Screen>();
+        for (int i = 0; i < 3 * WeakHistory.MIN_LIMIT; i++) {
+            final Screen screen = new Screen(i, 0);
+            open.add(screen);
+            history.add(screen);
+            history.add(screen);
+        }
+        assertEquals(open, history.getAll());
+    }
+
+    public void testRemoveAndClear() {
+        final WeakHistory<Screen> history = new WeakHistory<Screen>();
+        final Screen first = new Screen(0, 0);
+        final Screen second = new Screen(1, 0);
+        history.add(null);
+        history.add(first);
+        history.add(second);
+        history.add(first);
+        assertEquals(2, history.size());
+
+        history.remove(first);
+        assertEquals(1, history.size());
+        assertSame(second, history.getAll().get(0));
+
+        history.clear();
+        assertEquals(0, history.size());
+    }
+
+    /**
+     * Opens a screen at each step, closing the oldest one when {@code MAX_OPEN} are open, and checks that every open screen stays in the history.
+     *
+     * @return a reference to the last screen closed
+     */
+
+    private static WeakReference<Screen> runSteps(WeakHistory<Screen> history, List<Screen> open, int from, int to) {
+        WeakReference<Screen> closed = null;
+        for (int step = from; step < to; step++) {
+            if (open.size() == MAX_OPEN) {
+                final Screen screen = open.remove(0);
+                if (step % 2 == 0) {
+                    history.remove(screen);
+                }
+                closed = new WeakReference<Screen>(screen);
+            }
+            final Screen screen = new Screen(step, PAYLOAD_SIZE);
+            open.add(screen);
+            history.add(screen);
+            if (step % 100 == 0) {
+                assertTrue("An open screen was dropped at step " + step, history.getAll().containsAll(open));
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * Runs the garbage collector until a new object is collected and returns the heap in use.
+     */
+
+    private static long collectAndMeasure() {
+        final WeakReference<Object> sentinel = new WeakReference<Object>(new Object());
+        for (int i = 0; i < 20 && sentinel.get() != null; i++) {
+            System.gc();
+        }
+        System.gc();
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static final class Screen {
+
+        final int id;
+        final byte[] views;
+
+        Screen(int id, int size) {
+            this.id = id;
+            this.views = new byte[size];
+        }
+
+        @Override
+        public String toString() {
+            return "Screen " + id;
+        }
+    }
+}